@@ -0,0 +1,370 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Keeps the fleet as columns of primitives (about 21 bytes a ship)
+ *          instead of one object per ship, and builds ships only when asked
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.util.*;
+import java.util.function.*;
+
+public class ColumnFleetStore extends FleetStore
+{
+    // class constants
+    public static final byte SUBMARINE = 'S';
+    public static final byte FIGHTERJET = 'F';
+
+
+    // private class fields, column chunks line up so ship ii is at the same place in each,
+    // directories are volatile so a reader never sees a grown copy before its chunks are in it
+    private volatile byte[][] typeCol;
+    private volatile int[][] serialCol;      // Ship.packSerial key
+    private volatile short[][] yearCol;
+    private volatile byte[][] cylinderCol;
+    private volatile byte[][] fuelCol;       // Engine.fuelCode
+    private volatile int[][] codeCol;        // Submarine.hullCode or position in ordnances
+    private volatile double[][] measureCol;  // max depth or wing span
+    private int shipCount;
+    private volatile String[] ordnances;     // grown the same way as the directories
+    private int ordnanceCount;
+    private Map<String, Integer> ordnanceCodes;
+
+
+/***************************************************************************
+ * Default Constructor
+ * Import: none
+ * Export: none
+ * Assertion: creates an empty store with room for one chunk of ships
+ * ************************************************************************/
+
+    public ColumnFleetStore()
+    {
+        this(CHUNKSIZE);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: capacityHint (integer)
+ * Export: address of new ColumnFleetStore
+ * Assertion: creates an empty store pre-sized to hold capacityHint ships, fails if negative
+ * ************************************************************************/
+
+    public ColumnFleetStore(int capacityHint)
+    {
+        if (capacityHint < 0)
+        {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        typeCol = new byte[MINCHUNKS][];
+        serialCol = new int[MINCHUNKS][];
+        yearCol = new short[MINCHUNKS][];
+        cylinderCol = new byte[MINCHUNKS][];
+        fuelCol = new byte[MINCHUNKS][];
+        codeCol = new int[MINCHUNKS][];
+        measureCol = new double[MINCHUNKS][];
+        shipCount = 0;
+        ordnances = new String[MINCHUNKS];
+        ordnanceCount = 0;
+        ordnanceCodes = new HashMap<String, Integer>();
+        ensureCapacity(capacityHint);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: source (ColumnFleetStore), count (integer)
+ * Export: address of new ColumnFleetStore
+ * Assertion: creates a read-only store sharing the column chunks of source
+ * ************************************************************************/
+
+    private ColumnFleetStore(ColumnFleetStore source, int count)
+    {
+        typeCol = source.typeCol;
+        serialCol = source.serialCol;
+        yearCol = source.yearCol;
+        cylinderCol = source.cylinderCol;
+        fuelCol = source.fuelCol;
+        codeCol = source.codeCol;
+        measureCol = source.measureCol;
+        shipCount = count;
+        ordnances = source.ordnances;
+        ordnanceCount = source.ordnanceCount;
+        ordnanceCodes = null; // never looked at, a snapshot adds no ordnances
+        markReadOnly();
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: ensureCapacity
+ * Import: capacity (integer)
+ * Export: none
+ * Assertion: allocates column chunks until at least capacity ships fit, existing
+ *            values are never copied
+ * ************************************************************************/
+
+    public void ensureCapacity(int capacity)
+    {
+        int chunksNeeded = (int)(((long)capacity + CHUNKMASK) >>> CHUNKSHIFT);
+
+        checkWritable();
+
+        if (chunksNeeded > typeCol.length)
+        {
+            int newLength = Math.max(chunksNeeded, typeCol.length * 2);
+
+            typeCol = Arrays.copyOf(typeCol, newLength);
+            serialCol = Arrays.copyOf(serialCol, newLength);
+            yearCol = Arrays.copyOf(yearCol, newLength);
+            cylinderCol = Arrays.copyOf(cylinderCol, newLength);
+            fuelCol = Arrays.copyOf(fuelCol, newLength);
+            codeCol = Arrays.copyOf(codeCol, newLength);
+            measureCol = Arrays.copyOf(measureCol, newLength);
+        }
+
+        for (int ii = chunksNeeded - 1; (ii >= 0) && (typeCol[ii] == null); ii--)
+        {
+            typeCol[ii] = new byte[CHUNKSIZE];
+            serialCol[ii] = new int[CHUNKSIZE];
+            yearCol[ii] = new short[CHUNKSIZE];
+            cylinderCol[ii] = new byte[CHUNKSIZE];
+            fuelCol[ii] = new byte[CHUNKSIZE];
+            codeCol[ii] = new int[CHUNKSIZE];
+            measureCol[ii] = new double[CHUNKSIZE];
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: addShip
+ * Import: ship (Ship)
+ * Export: none
+ * Assertion: copies the ship's values into the columns
+ * ************************************************************************/
+
+    public void addShip(Ship ship)
+    {
+        int chunk = shipCount >>> CHUNKSHIFT;
+        int slot = shipCount & CHUNKMASK;
+
+        checkWritable();
+
+        if ((chunk >= typeCol.length) || (typeCol[chunk] == null))
+        {
+            ensureCapacity(shipCount + 1);
+        }
+
+        serialCol[chunk][slot] = ship.getSerialKey();
+        yearCol[chunk][slot] = (short)ship.getYear();
+        cylinderCol[chunk][slot] = (byte)ship.getEngine().getCylinders();
+        fuelCol[chunk][slot] = (byte)Engine.fuelCode(ship.getEngine().getFuel());
+
+        if (ship instanceof Submarine)
+        {
+            typeCol[chunk][slot] = SUBMARINE;
+            codeCol[chunk][slot] = Submarine.hullCode(((Submarine)ship).getHull());
+            measureCol[chunk][slot] = ((Submarine)ship).getMaxDepth();
+        }
+        else
+        {
+            typeCol[chunk][slot] = FIGHTERJET;
+            codeCol[chunk][slot] = ordnanceCode(((FighterJet)ship).getOrdnance());
+            measureCol[chunk][slot] = ((FighterJet)ship).getWingSpan();
+        }
+        shipCount = shipCount + 1;
+    }
+
+
+/***************************************************************************
+ * Submodule: compact
+ * Import: keep (IntPredicate)
+ * Export: compacted (FleetStore)
+ * Assertion: a new store with the column values of the ships that pass keep, copied
+ *            without building any ships, it carries on with the ordnance dictionary
+ * ************************************************************************/
+
+    public FleetStore compact(IntPredicate keep)
+    {
+        ColumnFleetStore compacted = new ColumnFleetStore();
+        int chunk, slot, toChunk, toSlot;
+
+        checkWritable();
+        markReadOnly();
+
+        // the dictionary is only ever added to, so snapshots of this store can share it too
+        compacted.ordnances = ordnances;
+        compacted.ordnanceCount = ordnanceCount;
+        compacted.ordnanceCodes = ordnanceCodes;
+
+        for (int ii = 0; ii < shipCount; ii++)
+        {
+            if (keep.test(ii))
+            {
+                chunk = ii >>> CHUNKSHIFT;
+                slot = ii & CHUNKMASK;
+                toChunk = compacted.shipCount >>> CHUNKSHIFT;
+                toSlot = compacted.shipCount & CHUNKMASK;
+                compacted.ensureCapacity(compacted.shipCount + 1);
+
+                compacted.typeCol[toChunk][toSlot] = typeCol[chunk][slot];
+                compacted.serialCol[toChunk][toSlot] = serialCol[chunk][slot];
+                compacted.yearCol[toChunk][toSlot] = yearCol[chunk][slot];
+                compacted.cylinderCol[toChunk][toSlot] = cylinderCol[chunk][slot];
+                compacted.fuelCol[toChunk][toSlot] = fuelCol[chunk][slot];
+                compacted.codeCol[toChunk][toSlot] = codeCol[chunk][slot];
+                compacted.measureCol[toChunk][toSlot] = measureCol[chunk][slot];
+                compacted.shipCount = compacted.shipCount + 1;
+            }
+        }
+        return compacted;
+    }
+
+
+// ACCESSORS
+/***************************************************************************
+ * Submodule: getShip
+ * Import: index (integer)
+ * Export: ship (Ship)
+ * Assertion: a new ship built from the columns at a valid index, changing it
+ *            does not change the store
+ * ************************************************************************/
+
+    public Ship getShip(int index)
+    {
+        Ship ship;
+        int chunk = index >>> CHUNKSHIFT;
+        int slot = index & CHUNKMASK;
+        String serialNum = Ship.unpackSerial(serialCol[chunk][slot]);
+        Engine engine = Engine.of(cylinderCol[chunk][slot], Engine.fuelName(fuelCol[chunk][slot]));
+
+        if (typeCol[chunk][slot] == SUBMARINE)
+        {
+            ship = new Submarine(serialNum, yearCol[chunk][slot], Submarine.hullName(codeCol[chunk][slot]),
+                                 measureCol[chunk][slot], engine);
+        }
+        else
+        {
+            ship = new FighterJet(serialNum, yearCol[chunk][slot], measureCol[chunk][slot],
+                                  ordnances[codeCol[chunk][slot]], engine);
+        }
+        return ship;
+    }
+
+
+    public Ship copyShip(int index)
+    {
+        return getShip(index); // getShip already builds a new ship
+    }
+
+
+    public int getShipCount()
+    {
+        return shipCount;
+    }
+
+
+/***************************************************************************
+ * Submodule: snapshot
+ * Import: count (integer)
+ * Export: frozen (FleetStore)
+ * Assertion: a read-only store sharing the column directories and the ordnance
+ *            dictionary, both are only ever written past the entries already in them
+ * ************************************************************************/
+
+    public FleetStore snapshot(int count)
+    {
+        if ((count < 0) || (count > shipCount))
+        {
+            throw new IllegalArgumentException("Invalid snapshot count");
+        }
+        return new ColumnFleetStore(this, count);
+    }
+
+
+/***************************************************************************
+ * Submodule: getSpeed
+ * Import: index (integer)
+ * Export: speed (real)
+ * Assertion: calcSpeed of the ship at a valid index, read straight from the columns
+ * ************************************************************************/
+
+    public double getSpeed(int index)
+    {
+        double speed;
+        int chunk = index >>> CHUNKSHIFT;
+        int slot = index & CHUNKMASK;
+
+        if (typeCol[chunk][slot] == SUBMARINE)
+        {
+            speed = Submarine.calcSpeed(cylinderCol[chunk][slot], measureCol[chunk][slot]);
+        }
+        else
+        {
+            speed = FighterJet.calcSpeed(measureCol[chunk][slot], cylinderCol[chunk][slot]);
+        }
+        return speed;
+    }
+
+
+/***************************************************************************
+ * Submodule: calcTravel
+ * Import: index (integer), travelDistance (integer)
+ * Export: travelTime (real)
+ * Assertion: calcTravel of the ship at a valid index, read straight from the columns
+ * ************************************************************************/
+
+    public double calcTravel(int index, int travelDistance)
+    {
+        double time;
+        int chunk = index >>> CHUNKSHIFT;
+        int slot = index & CHUNKMASK;
+
+        if (typeCol[chunk][slot] == SUBMARINE)
+        {
+            time = Submarine.calcTravel(travelDistance, cylinderCol[chunk][slot], measureCol[chunk][slot]);
+        }
+        else
+        {
+            time = Ship.calcTravel(travelDistance,
+                                   FighterJet.calcSpeed(measureCol[chunk][slot], cylinderCol[chunk][slot]));
+        }
+        return time;
+    }
+
+
+    public int getSerialKey(int index)
+    {
+        return serialCol[index >>> CHUNKSHIFT][index & CHUNKMASK];
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: ordnanceCode
+ * Import: ordnance (String)
+ * Export: code (integer)
+ * Assertion: position of the ordnance in the dictionary, added the first time it is seen
+ * ************************************************************************/
+
+    private int ordnanceCode(String ordnance)
+    {
+        Integer code = ordnanceCodes.get(ordnance);
+
+        if (code == null)
+        {
+            String[] table = ordnances;
+
+            if (ordnanceCount == table.length)
+            {
+                table = Arrays.copyOf(table, ordnanceCount * 2);
+            }
+            code = ordnanceCount;
+            table[code] = ordnance;
+            ordnances = table; // published before any record uses the code
+            ordnanceCount = ordnanceCount + 1;
+            ordnanceCodes.put(ordnance, code);
+        }
+        return code;
+    }
+}
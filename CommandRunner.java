@@ -0,0 +1,342 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Runs text commands against a ShipStorage without the menu, so
+ *          loads, queries and saves can be scripted. Every command answers
+ *          with tab separated lines that start with its own name and end
+ *          with a single "ok" or "error" line
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.io.*;
+
+public class CommandRunner
+{
+    // class constants
+    public static final int SUCCEEDED = 0;
+    public static final int FAILED = 1;
+    public static final int QUITTING = 2;
+    public static final String OK = "ok";
+    public static final String ERROR = "error";
+    public static final char COMMENT = '#';
+    public static final String USAGE = "Commands: load FILE, save FILE, query DISTANCE..., dupes, count, "
+                                       + "get SERIAL, remove SERIAL, quit";
+
+
+    // private class fields
+    private ShipStorage shipStorage;
+    private TravelResult result;   // reused by every query
+    private int[] distances;
+    private StringBuilder row;
+    private boolean queriesOnly;   // load, save, remove and dupes are refused
+
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inShipStorage (ShipStorage)
+ * Export: address of new CommandRunner
+ * Assertion: runs every command against inShipStorage, fails if it is null
+ * ************************************************************************/
+
+    public CommandRunner(ShipStorage inShipStorage)
+    {
+        this(inShipStorage, false);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inShipStorage (ShipStorage), inQueriesOnly (boolean)
+ * Export: address of new CommandRunner
+ * Assertion: when inQueriesOnly is true only the commands that quickly read the storage
+ *            run, so whoever sends them cannot change the fleet, touch files or hold up
+ *            other clients with a whole fleet scan
+ * ************************************************************************/
+
+    public CommandRunner(ShipStorage inShipStorage, boolean inQueriesOnly)
+    {
+        if (inShipStorage == null)
+        {
+            throw new IllegalArgumentException("Invalid storage");
+        }
+        shipStorage = inShipStorage;
+        result = new TravelResult();
+        distances = new int[0];
+        row = new StringBuilder();
+        queriesOnly = inQueriesOnly;
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: run
+ * Import: in (BufferedReader), out (Writer)
+ * Export: errorCount (integer)
+ * Assertion: executes each line of in until it ends or a quit command, out is only
+ *            flushed when in has nothing more ready, so a script runs at full speed
+ *            and a program feeding lines one at a time still sees every answer
+ * ************************************************************************/
+
+    public int run(BufferedReader in, Writer out) throws IOException
+    {
+        int errorCount = 0;
+        int status = SUCCEEDED;
+        String line;
+
+        out.flush();
+        line = in.readLine();
+
+        while ((line != null) && (status != QUITTING))
+        {
+            status = execute(line, out);
+
+            if (status == FAILED)
+            {
+                errorCount++;
+            }
+
+            if (status != QUITTING)
+            {
+                if (!in.ready())
+                {
+                    out.flush();
+                }
+                line = in.readLine();
+            }
+        }
+        out.flush();
+        return errorCount;
+    }
+
+
+/***************************************************************************
+ * Submodule: execute
+ * Import: line (String), out (Appendable)
+ * Export: status (integer)
+ * Assertion: runs one command and writes its answer to out, blank lines and lines
+ *            starting with COMMENT are skipped without an answer. A command that
+ *            fails writes an error line and the next one still runs
+ * ************************************************************************/
+
+    public int execute(String line, Appendable out) throws IOException
+    {
+        int status = SUCCEEDED;
+        String trimmed = line.trim();
+        String command = trimmed;
+        String argument = "";
+        int space = indexOfSpace(trimmed);
+
+        if ((!trimmed.isEmpty()) && (trimmed.charAt(0) != COMMENT))
+        {
+            if (space >= 0)
+            {
+                command = trimmed.substring(0, space);
+                argument = trimmed.substring(space + 1).trim();
+            }
+
+            try
+            {
+                if ((queriesOnly) && (command.equals("load") || command.equals("save") || command.equals("remove")
+                                      || command.equals("dupes")))
+                {
+                    throw new IllegalArgumentException("Command " + command + " is not served here");
+                }
+
+                switch (command)
+                {
+                    case "load":
+                        load(requireArgument(argument), out);
+                        break;
+
+                    case "save":
+                        save(requireArgument(argument), out);
+                        break;
+
+                    case "query":
+                        query(requireArgument(argument), out);
+                        break;
+
+                    case "dupes":
+                        shipStorage.findDuplicates(out, "dupes\t");
+                        break;
+
+                    case "count":
+                        out.append("count\t").append(Integer.toString(shipStorage.getShipCount())).append('\n');
+                        break;
+
+                    case "get":
+                        get(requireArgument(argument), out);
+                        break;
+
+                    case "remove":
+                        remove(requireArgument(argument), out);
+                        break;
+
+                    case "quit":
+                        status = QUITTING;
+                        break;
+
+                    default:
+                        throw new IllegalArgumentException("Unknown command " + command + ". " + USAGE);
+                }
+                out.append(OK).append('\n');
+            }
+            catch (IllegalArgumentException | IOException e)
+            {
+                out.append(ERROR).append('\t').append(oneLine(e)).append('\n');
+                status = FAILED;
+            }
+        }
+        return status;
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: load
+ * Import: fileName (String), out (Appendable)
+ * Export: none
+ * Assertion: loads fileName into the storage, writes a reject line for each bad line
+ *            the report kept and then the ships loaded, lines rejected and milliseconds
+ * ************************************************************************/
+
+    private void load(String fileName, Appendable out) throws IOException
+    {
+        LoadReport report = new LoadReport();
+
+        FileManager.loadFile(shipStorage, fileName, report);
+
+        for (String error : report.getErrors())
+        {
+            out.append("reject\t").append(error).append('\n');
+        }
+        out.append("load\t").append(fileName).append('\t').append(Long.toString(report.getRowsLoaded()))
+           .append('\t').append(Long.toString(report.getRowsRejected())).append('\t')
+           .append(Long.toString(report.getElapsedNanos() / 1000000)).append('\n');
+    }
+
+
+    private void save(String fileName, Appendable out) throws IOException
+    {
+        int shipsWritten = FileManager.writeFile(shipStorage, fileName);
+
+        out.append("save\t").append(fileName).append('\t').append(Integer.toString(shipsWritten)).append('\n');
+    }
+
+
+/***************************************************************************
+ * Submodule: query
+ * Import: argument (String), out (Appendable)
+ * Export: none
+ * Assertion: one destination check for every distance in argument (split by spaces
+ *            or commas), each written as the distance, the ship's index, its travel
+ *            time in hours and the ship in file format, or -1 and NaN for no ship,
+ *            on a snapshot so a removal in between cannot take a ship from its index
+ * ************************************************************************/
+
+    private void query(String argument, Appendable out) throws IOException
+    {
+        String[] fields = argument.split("[\\s,]+");
+        int shipIndex;
+        ShipStorage fleet = shipStorage.snapshot();
+
+        if (distances.length != fields.length)
+        {
+            distances = new int[fields.length];
+        }
+
+        for (int ii = 0; ii < fields.length; ii++)
+        {
+            distances[ii] = Integer.parseInt(fields[ii]);
+        }
+        fleet.destinationCheck(distances, result);
+
+        for (int ii = 0; ii < distances.length; ii++)
+        {
+            shipIndex = result.getShipIndex(ii);
+            row.setLength(0);
+
+            if (shipIndex != TravelResult.NOSHIP)
+            {
+                fleet.getFleetVersion().getStore().getShip(shipIndex).appendFileString(row); // read, not copied
+            }
+            out.append("query\t").append(Integer.toString(distances[ii])).append('\t')
+               .append(Integer.toString(shipIndex)).append('\t').append(Double.toString(result.getTravelTime(ii)))
+               .append('\t').append(row).append('\n');
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: get
+ * Import: serialNum (String), out (Appendable)
+ * Export: none
+ * Assertion: writes the serial number and the ship that has it in file format, or
+ *            nothing when no ship has it
+ * ************************************************************************/
+
+    private void get(String serialNum, Appendable out) throws IOException
+    {
+        Ship ship = shipStorage.getBySerial(serialNum);
+
+        if (ship != null)
+        {
+            row.setLength(0);
+            ship.appendFileString(row);
+            out.append("get\t").append(serialNum).append('\t').append(row).append('\n');
+        }
+    }
+
+
+    private void remove(String serialNum, Appendable out) throws IOException
+    {
+        int removed = shipStorage.remove(serialNum);
+
+        out.append("remove\t").append(serialNum).append('\t').append(Integer.toString(removed)).append('\n');
+    }
+
+
+    private String requireArgument(String argument)
+    {
+        if (argument.isEmpty())
+        {
+            throw new IllegalArgumentException("Missing argument. " + USAGE);
+        }
+        return argument;
+    }
+
+
+    private static int indexOfSpace(String str)
+    {
+        int space = -1;
+
+        for (int ii = 0; (ii < str.length()) && (space < 0); ii++)
+        {
+            if (Character.isWhitespace(str.charAt(ii)))
+            {
+                space = ii;
+            }
+        }
+        return space;
+    }
+
+
+/***************************************************************************
+ * Submodule: oneLine
+ * Import: e (Exception)
+ * Export: message (String)
+ * Assertion: the exception's message with tabs and line breaks turned into spaces,
+ *            so it cannot break the answer into more lines or fields
+ * ************************************************************************/
+
+    private static String oneLine(Exception e)
+    {
+        String message = e.getMessage();
+
+        if (message == null)
+        {
+            message = e.toString();
+        }
+        return message.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+}
@@ -14,59 +14,67 @@ public class Engine
     public static final String BAT = "battery";
     public static final String DSL = "diesel";
     public static final String BIO = "bio";
+    private static final String[] FUELS = {BAT, DSL, BIO}; // position is the fuel code
 
 
     //private class fields
-    private int cylinders;
-    private String fuel;
+    private final int cylinders;
+    private final String fuel;
+
+
+    // every valid engine, made once, by cylinders then fuel code
+    private static final Engine[][] ENGINES = makeEngines();
 
 
 /**********************************************************************
- * Default Constructor
- * Import: none
- * Export: none
- * Assertion: 20 cylinders with diesel as fuel type
+ * Alternate Constructor
+ * Import: inCylinders (integer), inFuel (String)
+ * Export: address of new Engine object
+ * Assertion: only used to fill ENGINES, everyone else shares those through Engine.of
  * *******************************************************************/
 
-    public Engine()
+    private Engine(int inCylinders, String inFuel)
     {
-        cylinders = MAXCYL;
-        fuel = DSL;
+        cylinders = inCylinders;
+        fuel = inFuel;
     }
 
 
 /**********************************************************************
- * Alternate Constructor
- * Import: inCylinders, inFuel
- * Export: address of new Engine object
- * Assertion: creates the object if imports are valid, otherwise fails
+ * Submodule: of
+ * Import: inCylinders (integer), inFuel (String)
+ * Export: engine (Engine)
+ * Assertion: the one shared engine with those cylinders and fuel (in any case),
+ *            fails if the imports are not valid
  * *******************************************************************/
 
-    public Engine(int inCylinders, String inFuel)
+    public static Engine of(int inCylinders, String inFuel)
     {
-        if ((validateCylinders(inCylinders)) && (validateFuel(inFuel)))
+        int code = fuelCode(inFuel);
+
+        if ((code < 0) && (validateFuel(inFuel)))
         {
-            cylinders = inCylinders;
-            fuel = inFuel.toLowerCase();
+            code = fuelCode(inFuel.toLowerCase());
         }
-        else
+
+        if ((!validateCylinders(inCylinders)) || (code < 0))
         {
             throw new IllegalArgumentException("Invalid import value");
         }
+        return ENGINES[inCylinders][code];
     }
 
 
 /**********************************************************************
- * Copy Constructor
- * Import: inEngine
- * Export: address of new Engine object
- * Assertion: creates an object with an identical object state as the import
+ * Submodule: defaultEngine
+ * Import: none
+ * Export: engine (Engine)
+ * Assertion: 20 cylinders with diesel as fuel type
  * *******************************************************************/
 
-    public Engine(Engine inEngine)
+    public static Engine defaultEngine()
     {
-        cylinders = inEngine.getCylinders();
-        fuel = inEngine.getFuel();
+        return of(MAXCYL, DSL);
     }
 
 
@@ -74,55 +82,12 @@ public class Engine
  * Submodule: clone
  * Import: none
  * Export: cloneEngine
- * Assertion: creates a clone of the object engine
+ * Assertion: engines never change, so the engine itself serves as its clone
  * *******************************************************************/
 
     public Engine clone()
     {
-        Engine cloneEngine;
-        cloneEngine = new Engine(this);
-        return cloneEngine;
-    }
-
-
-// MUTATORS
-/**********************************************************************
- * Submodule: setCylinders
- * Import: inCylinders (integer)
- * Export: none
- * Assertion: sets cylinders to inCylinders
- * *******************************************************************/
-
-    public void setCylinders(int inCylinders)
-    {
-        if (validateCylinders(inCylinders))
-        {
-            cylinders = inCylinders;
-        }
-        else
-        {
-            throw new IllegalArgumentException("Invalid. Cylinders must be between 2 and 20 (inclusive).");
-        }
-    }
-
-
-/**********************************************************************
- * Submodule: setFuel
- * Import: inFuel (String)
- * Export: none
- * Assertion: sets fuel to inFuel
- * *******************************************************************/
-    
-    public void setFuel(String inFuel)
-    {
-        if (validateFuel(inFuel))
-        {
-            fuel = inFuel.toLowerCase();
-        }
-        else
-        {
-            throw new IllegalArgumentException("Invalid. Fuel must be either battery, diesel or bio.");
-        }
+        return this;
     }
 
 
@@ -152,13 +117,26 @@ public class Engine
     
         if (inObj instanceof Engine)
         {
-            Engine inEngine = (Engine)inObj;
-            same = ((cylinders == inEngine.getCylinders()) && (fuel.equals(inEngine.getFuel())));
+            // there is only one engine for each value, so the same value means the same object
+            same = (this == inObj);
         }
             return same;
     }
 
 
+/**********************************************************************
+ * Submodule: hashCode
+ * Import: none
+ * Export: hash (integer)
+ * Assertion: engines that are equal have the same hash
+ * *******************************************************************/
+
+    public int hashCode()
+    {
+        return (31 * cylinders) + fuel.hashCode();
+    }
+
+
 /**********************************************************************
  * Submodule: toString
  * Import: none
@@ -174,7 +152,68 @@ public class Engine
     }
 
 
+/**********************************************************************
+ * Submodule: fuelCode
+ * Import: inFuel (String)
+ * Export: code (integer)
+ * Assertion: small number standing for a valid fuel, -1 when the fuel is not valid
+ * *******************************************************************/
+
+    public static int fuelCode(String inFuel)
+    {
+        int code = -1;
+
+        for (int ii = 0; ii < FUELS.length; ii++)
+        {
+            if (FUELS[ii].equals(inFuel))
+            {
+                code = ii;
+            }
+        }
+        return code;
+    }
+
+
+/**********************************************************************
+ * Submodule: fuelName
+ * Import: code (integer)
+ * Export: fuel (String)
+ * Assertion: the fuel a fuelCode stands for, fails for an unknown code
+ * *******************************************************************/
+
+    public static String fuelName(int code)
+    {
+        if ((code < 0) || (code >= FUELS.length))
+        {
+            throw new IllegalArgumentException("Invalid fuel code " + code);
+        }
+        return FUELS[code];
+    }
+
+
 // PRIVATE SUBMODULES
+/**********************************************************************
+ * Submodule: makeEngines
+ * Import: none
+ * Export: engines (ARRAY OF ARRAY OF Engine)
+ * Assertion: one engine for every valid cylinder count and fuel
+ * *******************************************************************/
+
+    private static Engine[][] makeEngines()
+    {
+        Engine[][] engines = new Engine[MAXCYL + 1][FUELS.length];
+
+        for (int ii = MINCYL; ii <= MAXCYL; ii++)
+        {
+            for (int jj = 0; jj < FUELS.length; jj++)
+            {
+                engines[ii][jj] = new Engine(ii, FUELS[jj]);
+            }
+        }
+        return engines;
+    }
+
+
 /**********************************************************************
  * Submodule: validateCylinders
  * Import: inCylinders (integer)
@@ -182,7 +221,7 @@ public class Engine
  * Assertion: cylinders is between 2 and 20 inclusive
  * *******************************************************************/
 
-    public boolean validateCylinders(int inCylinders)
+    private static boolean validateCylinders(int inCylinders)
     {
         return ((inCylinders >= MINCYL) && (inCylinders <= MAXCYL));
     }
@@ -195,10 +234,16 @@ public class Engine
  * Assertion: fuel is either "battery" "diesel" or "bio"
  * *******************************************************************/
 
-    public boolean validateFuel(String inFuel)
+    private static boolean validateFuel(String inFuel)
     {
-        inFuel = inFuel.toLowerCase();
-        return ((inFuel.equals(BAT)) || (inFuel.equals(DSL)) || (inFuel.equals(BIO)));
+        boolean valid = false;
+
+        if (inFuel != null)
+        {
+            inFuel = inFuel.toLowerCase();
+            valid = ((inFuel.equals(BAT)) || (inFuel.equals(DSL)) || (inFuel.equals(BIO)));
+        }
+        return valid;
     }
     
 }
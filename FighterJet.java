@@ -101,6 +101,7 @@ public class FighterJet extends Ship
         if (validateWingSpan(inWingSpan))
         { 
             wingSpan = inWingSpan;
+            resetSpeed();
         }
         else
         {
@@ -159,6 +160,20 @@ public class FighterJet extends Ship
     }
 
 
+/***********************************************************************
+ *  Submodule: hashCode
+ *  Import: none
+ *  Export: hash (integer)
+ *  Assertion: fighter jets that are equal have the same hash, wingSpan is
+ *             left out because equals only compares it within TOL
+ *  *********************************************************************/
+
+    public int hashCode()
+    {
+        return (31 * super.hashCode()) + ordnance.hashCode();
+    }
+
+
 /***********************************************************************
  *  Submodule: toString
  *  Import: none
@@ -175,35 +190,47 @@ public class FighterJet extends Ship
 
 
 /***********************************************************************
- *  Submodule: toFileString
- *  Import: none
- *  Export: str (String)
+ *  Submodule: appendFileString
+ *  Import: str (StringBuilder)
+ *  Export: none
+ *  Assertion: appends the fighter jet in file format without making any Strings
  *  *********************************************************************/
 
-    public String toFileString()
+    public void appendFileString(StringBuilder str)
     {
-        String str;
-        
-        str = ("F," + super.toFileString() + "," + wingSpan + "," + ordnance);
-        return str;    
+        str.append("F,");
+        super.appendFileString(str);
+        str.append(',').append(wingSpan).append(',').append(ordnance);
     }
 
 
 /***********************************************************************
- *  Submodule: calcTravel
- *  Import: travelDistance (integer)
- *  Export: jetTime (real)
- *  Assertion: calculates the time it takes for a fighter jet to travel a certain distance
+ *  Submodule: calcSpeed
+ *  Import: none
+ *  Export: jetSpeed (real)
+ *  Assertion: calculates the distance a fighter jet covers per hour
  *  *********************************************************************/
 
-    public double calcTravel(int travelDistance)
+    public double calcSpeed()
     {
-        double jetTime;
+        return calcSpeed(getWingSpan(), getCylinders());
+    }
 
-        jetTime = travelDistance / (getWingSpan() * super.getEngine().getCylinders() * 150);
 
-        jetTime = Math.round(jetTime * 100.0) / 100.0; // rounds to 2 decimal places
-        return jetTime;
+/***********************************************************************
+ *  Submodule: calcSpeed (static)
+ *  Import: wingSpan (real), cylinders (integer)
+ *  Export: jetSpeed (real)
+ *  Assertion: speed of a fighter jet with that wing span and that many cylinders,
+ *             so stores that keep only the numbers get the same speed
+ *  *********************************************************************/
+
+    public static double calcSpeed(double wingSpan, int cylinders)
+    {
+        double jetSpeed;
+
+        jetSpeed = wingSpan * cylinders * 150;
+        return jetSpeed;
     }        
 
 
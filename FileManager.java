@@ -5,6 +5,13 @@
  * *********************************************************************/
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 
 /***********************************************************************
  *  Submodule: FileManager
@@ -15,6 +22,21 @@ import java.io.*;
 
 public class FileManager
 {
+    // class constants
+    public static final int AVGROWBYTES = 40; // rough length of one saved ship, used to pre-size storage
+    public static final int BUFFERSIZE = 1 << 20;
+    public static final int MAPWINDOW = 1 << 28;
+    public static final int RANGESPERTHREAD = 4;     // extra ranges so one slow range does not hold up the rest
+    public static final long MINRANGEBYTES = 1 << 20;
+    private static final int ALIGNBYTES = 1 << 16;
+    private static final int FLUSHCHARS = 1 << 18;   // characters gathered before they are encoded and written
+    public static final String TEMPSUFFIX = ".tmp";
+    public static final int SNAPSHOTMAGIC = 0x53484950; // "SHIP"
+    public static final short SNAPSHOTVERSION = 1;
+    public static final int RECORDBYTES = 21;          // type, XXX, YYY, year, cylinders, fuel, hull or ordnance, depth or span
+    public static final int SNAPSHOTBATCH = 8192;      // ships loadSnapshot decodes before adopting them at once
+
+
     public static void readFile(ShipStorage ss, String fileName)
     {
         FileInputStream fileStrm = null;
@@ -27,6 +49,7 @@ public class FileManager
         try
         {
             fileStrm = new FileInputStream(fileName);
+            presizeStorage(ss, new File(fileName).length());
             rdr = new InputStreamReader(fileStrm);
             bufRdr = new BufferedReader(rdr);
 
@@ -60,6 +83,401 @@ public class FileManager
     }
 
 
+/***********************************************************************
+ *  Submodule: loadFile
+ *  Import: ss (ShipStorage), fileName (String)
+ *  Export: report (LoadReport)
+ *  Assertion: loads the same ships as readFile, but parses straight from a large
+ *             byte buffer and collects bad lines in the report instead of printing them
+ *  *********************************************************************/
+
+    public static LoadReport loadFile(ShipStorage ss, String fileName)
+    {
+        LoadReport report = new LoadReport();
+
+        try
+        {
+            loadFile(ss, fileName, report);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error in file processing " + e.getMessage());
+        }
+        return report;
+    }
+
+
+/***********************************************************************
+ *  Submodule: loadFile
+ *  Import: ss (ShipStorage), fileName (String), report (LoadReport)
+ *  Export: none
+ *  Assertion: loads like loadFile into report, but a file that cannot be read is
+ *             passed to the caller instead of printed, ships loaded before it stay
+ *  *********************************************************************/
+
+    public static void loadFile(ShipStorage ss, String fileName, LoadReport report) throws IOException
+    {
+        FileInputStream fileStrm = null;
+        long startTime = System.nanoTime();
+
+        try
+        {
+            fileStrm = new FileInputStream(fileName);
+            presizeStorage(ss, new File(fileName).length());
+            loadStream(ss, fileStrm, report);
+        }
+        finally
+        {
+            report.setElapsedNanos(System.nanoTime() - startTime);
+
+            if (fileStrm != null)
+            {
+                fileStrm.close();
+            }
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: loadStream
+ *  Import: ss (ShipStorage), in (InputStream), report (LoadReport)
+ *  Export: none
+ *  Assertion: feeds the stream to a ShipParser one buffer at a time, carrying the
+ *             unfinished last line of each buffer over to the next
+ *  *********************************************************************/
+
+    private static void loadStream(ShipStorage ss, InputStream in, LoadReport report) throws IOException
+    {
+        byte[] buffer = new byte[BUFFERSIZE];
+        ByteBuffer buf = ByteBuffer.wrap(buffer);
+        ShipParser parser = new ShipParser();
+        Consumer<Ship> adder = ss::addShip;
+        int filled = 0;          // bytes of buffer holding data
+        int lineStart = 0;
+        int read;
+        boolean endOfFile = false;
+
+        while (!endOfFile)
+        {
+            // keep the unfinished line, only grow the buffer when that line fills all of it
+            if ((lineStart == 0) && (filled == buffer.length))
+            {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                buf = ByteBuffer.wrap(buffer);
+            }
+            else
+            {
+                System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                filled = filled - lineStart;
+            }
+
+            read = in.read(buffer, filled, buffer.length - filled);
+
+            if (read < 0)
+            {
+                endOfFile = true;
+            }
+            else
+            {
+                filled = filled + read;
+            }
+            lineStart = parser.parseLines(adder, buf, 0, filled, endOfFile, report);
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: mapFile
+ *  Import: ss (ShipStorage), fileName (String)
+ *  Export: report (LoadReport)
+ *  Assertion: loads the same ships as readFile by memory mapping the file a window at a
+ *             time and parsing straight from the mapped bytes, so files over 2 GB work too
+ *  *********************************************************************/
+
+    public static LoadReport mapFile(ShipStorage ss, String fileName)
+    {
+        LoadReport report = new LoadReport();
+        FileChannel channel = null;
+        long startTime = System.nanoTime();
+
+        try
+        {
+            channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+            presizeStorage(ss, channel.size());
+            mapRange(ss::addShip, channel, 0, channel.size(), new ShipParser(), report);
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            if (channel != null)
+            {
+                try 
+                {
+                    channel.close();
+                }
+                catch (IOException ex2)
+                {
+                }
+            }
+            System.out.println("Error in file processing " + e.getMessage());
+        }
+        report.setElapsedNanos(System.nanoTime() - startTime);
+        return report;
+    }
+
+
+/***********************************************************************
+ *  Submodule: mapRange
+ *  Import: ships (Consumer), channel (FileChannel), start (long), end (long),
+ *          parser (ShipParser), report (LoadReport)
+ *  Export: none
+ *  Assertion: maps bytes start to end of the file MAPWINDOW bytes at a time, each window
+ *             starting where the unfinished line of the one before it began, and hands
+ *             every ship to ships
+ *  *********************************************************************/
+
+    private static void mapRange(Consumer<Ship> ships, FileChannel channel, long start, long end,
+                                 ShipParser parser, LoadReport report) throws IOException
+    {
+        long position = start;
+        int length;
+        int lineStart;
+        boolean lastWindow;
+        MappedByteBuffer buf;
+
+        while (position < end)
+        {
+            length = (int)Math.min(MAPWINDOW, end - position);
+            lastWindow = (position + length == end);
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            lineStart = parser.parseLines(ships, buf, 0, length, lastWindow, report);
+
+            if ((lineStart == 0) && (!lastWindow))
+            {
+                throw new IOException("Line at byte " + position + " is longer than " + MAPWINDOW + " bytes");
+            }
+            position = position + lineStart;
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: parallelLoadFile
+ *  Import: ss (ShipStorage), fileName (String)
+ *  Export: report (LoadReport)
+ *  Assertion: parallelLoadFile using one thread per available processor
+ *  *********************************************************************/
+
+    public static LoadReport parallelLoadFile(ShipStorage ss, String fileName)
+    {
+        return parallelLoadFile(ss, fileName, Runtime.getRuntime().availableProcessors());
+    }
+
+
+/***********************************************************************
+ *  Submodule: parallelLoadFile
+ *  Import: ss (ShipStorage), fileName (String), parallelism (integer)
+ *  Export: report (LoadReport)
+ *  Assertion: loads the same ships in the same order as readFile, parsing line aligned
+ *             ranges of the file into plain lists on a ForkJoinPool, then adding them in
+ *             file order once every range has parsed, so a failed range adds nothing
+ *  *********************************************************************/
+
+    public static LoadReport parallelLoadFile(ShipStorage ss, String fileName, int parallelism)
+    {
+        LoadReport report = new LoadReport();
+        FileChannel channel = null;
+        ForkJoinPool pool = null;
+        long startTime = System.nanoTime();
+        long[] bounds;
+        List<List<Ship>> parts = new ArrayList<List<Ship>>();
+        List<Callable<LoadReport>> tasks = new ArrayList<Callable<LoadReport>>();
+        List<Future<LoadReport>> results;
+        LoadReport[] partReports;
+        List<Ship> loaded;
+        long linesBefore = 0;
+        long shipsLoaded = 0;
+
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("Invalid parallelism");
+        }
+
+        try
+        {
+            channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+            bounds = splitRanges(channel, parallelism);
+
+            for (int ii = 0; ii < bounds.length - 1; ii++)
+            {
+                final FileChannel rangeChannel = channel;
+                final long start = bounds[ii];
+                final long end = bounds[ii + 1];
+                final List<Ship> part = new ArrayList<Ship>((int)Math.min((end - start) / AVGROWBYTES,
+                                                                          Integer.MAX_VALUE));
+
+                parts.add(part);
+                tasks.add(() ->
+                {
+                    LoadReport rangeReport = new LoadReport();
+
+                    mapRange(part::add, rangeChannel, start, end, new ShipParser(), rangeReport);
+                    return rangeReport;
+                });
+            }
+
+            pool = new ForkJoinPool(parallelism);
+            results = pool.invokeAll(tasks);
+            partReports = new LoadReport[results.size()];
+
+            // every range has to parse before any ship reaches the storage
+            for (int ii = 0; ii < partReports.length; ii++)
+            {
+                partReports[ii] = results.get(ii).get();
+                shipsLoaded = shipsLoaded + parts.get(ii).size();
+            }
+
+            if (shipsLoaded > Integer.MAX_VALUE)
+            {
+                throw new IOException(fileName + " holds more ships than a storage can");
+            }
+            loaded = new ArrayList<Ship>((int)shipsLoaded);
+
+            // ranges are joined in file order, so the ships end up in the same order as readFile
+            for (int ii = 0; ii < partReports.length; ii++)
+            {
+                report.addReport(partReports[ii], linesBefore);
+                linesBefore = linesBefore + partReports[ii].getRowsLoaded() + partReports[ii].getRowsRejected();
+                loaded.addAll(parts.get(ii));
+                parts.get(ii).clear();
+            }
+            ss.adoptShips(loaded);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error in file processing " + e.getMessage());
+        }
+        catch (ExecutionException e)
+        {
+            System.out.println("Error in file processing " + e.getCause().getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            System.out.println("File processing interrupted");
+        }
+        finally
+        {
+            if (pool != null)
+            {
+                pool.shutdown();
+            }
+
+            if (channel != null)
+            {
+                try 
+                {
+                    channel.close();
+                }
+                catch (IOException ex2)
+                {
+                }
+            }
+        }
+        report.setElapsedNanos(System.nanoTime() - startTime);
+        return report;
+    }
+
+
+/***********************************************************************
+ *  Submodule: splitRanges
+ *  Import: channel (FileChannel), parallelism (integer)
+ *  Export: bounds (ARRAY OF long)
+ *  Assertion: cuts the file into roughly equal ranges that each start at the beginning
+ *             of a line, range ii is bytes bounds[ii] to bounds[ii + 1]
+ *  *********************************************************************/
+
+    private static long[] splitRanges(FileChannel channel, int parallelism) throws IOException
+    {
+        long size = channel.size();
+        int ranges = (int)Math.max(1, Math.min((long)parallelism * RANGESPERTHREAD, size / MINRANGEBYTES));
+        long[] bounds = new long[ranges + 1];
+
+        bounds[0] = 0;
+        bounds[ranges] = size;
+
+        for (int ii = 1; ii < ranges; ii++)
+        {
+            bounds[ii] = Math.max(bounds[ii - 1], findLineStart(channel, (size / ranges) * ii, size));
+        }
+        return bounds;
+    }
+
+
+/***********************************************************************
+ *  Submodule: findLineStart
+ *  Import: channel (FileChannel), position (long), size (long)
+ *  Export: lineStart (long)
+ *  Assertion: first byte at or after position that begins a line, a line begins after a
+ *             \n, or after a \r that is not followed by \n
+ *  *********************************************************************/
+
+    private static long findLineStart(FileChannel channel, long position, long size) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(ALIGNBYTES);
+        long base = position - 1; // file position of buf[0], the byte before the first candidate
+        long lineStart = -1;
+        int read = ALIGNBYTES;
+        byte before;
+        byte at;
+
+        if (position <= 0)
+        {
+            lineStart = 0;
+        }
+
+        while ((lineStart < 0) && (base < size - 1) && (read > 1))
+        {
+            buf.clear();
+            read = channel.read(buf, base);
+
+            for (int ii = 0; (ii + 1 < read) && (lineStart < 0); ii++)
+            {
+                before = buf.get(ii);
+                at = buf.get(ii + 1);
+
+                if ((before == '\n') || ((before == '\r') && (at != '\n')))
+                {
+                    lineStart = base + ii + 1;
+                }
+            }
+            base = base + read - 1; // the last byte read is the "before" byte of the next candidate
+        }
+
+        if (lineStart < 0)
+        {
+            lineStart = size; // no line begins after position, the previous range takes the rest
+        }
+        return lineStart;
+    }
+
+
+/***********************************************************************
+ *  Submodule: presizeStorage
+ *  Import: ss (ShipStorage), fileBytes (long)
+ *  Export: none
+ *  Assertion: makes room in the storage for the ships a file of that size should hold
+ *  *********************************************************************/
+
+    private static void presizeStorage(ShipStorage ss, long fileBytes)
+    {
+        long expected = (long)ss.getPlaceCount() + (fileBytes / AVGROWBYTES);
+
+        ss.ensureCapacity((int)Math.min(expected, Integer.MAX_VALUE));
+    }
+
+
 /***********************************************************************
  *  Submodule: processLine
  *  Import: ss (ShipStorage), line (String)
@@ -98,7 +516,7 @@ public class FileManager
             cylinders = Integer.parseInt(lineArray[3]);
             fuel = lineArray[4];
 
-            Engine engine = new Engine(cylinders, fuel);
+            Engine engine = Engine.of(cylinders, fuel);
     
             switch (shipChoice)
             {
@@ -136,22 +554,26 @@ public class FileManager
  *  Submodule: writeOneRow 
  *  Import: ss (ShipStorage), fileName (String)
  *  Export: none
- *  Assertion: outputs ships to text file
+ *  Assertion: outputs ships to text file, ships added while writing are left out
  *  *********************************************************************/
    
      public static void writeOneRow(ShipStorage ss, String fileName)
     {
         FileOutputStream fileStrm = null;
         PrintWriter pw;
+        FleetVersion fleet = ss.snapshot().getFleetVersion();
 
         try
         {          
             fileStrm = new FileOutputStream(fileName);
             pw = new PrintWriter(fileStrm);
         
-            for (int ii = 0; ii < ss.getShipCount(); ii++)            
+            for (int ii = 0; ii < fleet.getPlaceCount(); ii++)
             {
-                pw.println(ss.getShipArray()[ii].toFileString());
+                if (!fleet.isRemoved(ii))
+                {
+                    pw.println(fleet.getStore().getShip(ii).toFileString());
+                }
             }
 
         pw.close();
@@ -171,4 +593,520 @@ public class FileManager
             System.out.println("Error in writing to file " + e.getMessage());
         }
     }
+
+
+/***********************************************************************
+ *  Submodule: saveFile
+ *  Import: ss (ShipStorage), fileName (String)
+ *  Export: none
+ *  Assertion: writes the same file as writeOneRow, but gathers rows in one reusable
+ *             buffer and writes them to a temporary file that only replaces fileName
+ *             once it is complete, so a failed save never leaves a half written fleet
+ *  *********************************************************************/
+
+    public static void saveFile(ShipStorage ss, String fileName)
+    {
+        try
+        {
+            writeFile(ss, fileName);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error in writing to file " + e.getMessage());
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: writeFile
+ *  Import: ss (ShipStorage), fileName (String)
+ *  Export: shipsWritten (integer)
+ *  Assertion: saves like saveFile, but a failed save is passed to the caller
+ *             instead of printed, and fileName is left as it was
+ *  *********************************************************************/
+
+    public static int writeFile(ShipStorage ss, String fileName) throws IOException
+    {
+        FleetVersion fleet = ss.snapshot().getFleetVersion(); // ships are read in place, not copied
+        FleetStore store = fleet.getStore();
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path temp = null;
+        FileChannel channel = null;
+        StringBuilder rows = new StringBuilder(FLUSHCHARS + 256);
+        ByteBuffer out = ByteBuffer.allocate(BUFFERSIZE);
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                                 .onMalformedInput(CodingErrorAction.REPLACE)
+                                 .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        String newLine = System.lineSeparator();
+
+        try
+        {
+            temp = target.resolveSibling(target.getFileName() + TEMPSUFFIX);
+            channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+
+            for (int ii = 0; ii < fleet.getPlaceCount(); ii++)
+            {
+                if (!fleet.isRemoved(ii))
+                {
+                    store.getShip(ii).appendFileString(rows);
+                    rows.append(newLine);
+                }
+
+                if (rows.length() >= FLUSHCHARS)
+                {
+                    writeChars(rows, encoder, out, channel, false);
+                }
+            }
+            writeChars(rows, encoder, out, channel, true);
+
+            channel.force(true);
+            channel.close();
+            moveIntoPlace(temp, target);
+        }
+        catch (IOException e)
+        {
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ex2)
+                {
+                }
+            }
+
+            if (temp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(temp);
+                }
+                catch (IOException ex2)
+                {
+                }
+            }
+            throw e;
+        }
+        return fleet.getShipCount();
+    }
+
+
+/***********************************************************************
+ *  Submodule: writeChars
+ *  Import: rows (StringBuilder), encoder (CharsetEncoder), out (ByteBuffer),
+ *          channel (FileChannel), endOfInput (boolean)
+ *  Export: none
+ *  Assertion: encodes rows through out into the channel and empties rows, keeping
+ *             only a half surrogate pair the encoder could not finish yet
+ *  *********************************************************************/
+
+    private static void writeChars(StringBuilder rows, CharsetEncoder encoder, ByteBuffer out, FileChannel channel,
+                                   boolean endOfInput) throws IOException
+    {
+        CharBuffer chars = CharBuffer.wrap(rows);
+        CoderResult result;
+
+        do
+        {
+            result = encoder.encode(chars, out, endOfInput);
+
+            if (result.isOverflow())
+            {
+                drain(out, channel);
+            }
+        } while (result.isOverflow());
+
+        if (endOfInput)
+        {
+            do
+            {
+                result = encoder.flush(out);
+
+                if (result.isOverflow())
+                {
+                    drain(out, channel);
+                }
+            } while (result.isOverflow());
+            encoder.reset();
+        }
+        drain(out, channel);
+        rows.delete(0, chars.position());
+    }
+
+
+/***********************************************************************
+ *  Submodule: drain
+ *  Import: out (ByteBuffer), channel (FileChannel)
+ *  Export: none
+ *  Assertion: writes everything in out to the channel and clears out
+ *  *********************************************************************/
+
+    private static void drain(ByteBuffer out, FileChannel channel) throws IOException
+    {
+        out.flip();
+
+        while (out.hasRemaining())
+        {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+
+/***********************************************************************
+ *  Submodule: moveIntoPlace
+ *  Import: temp (Path), target (Path)
+ *  Export: none
+ *  Assertion: renames temp over target in one step where the file system allows it
+ *  *********************************************************************/
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException
+    {
+        try
+        {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: saveSnapshot
+ *  Import: ss (ShipStorage), fileName (String)
+ *  Export: none
+ *  Assertion: writes the fleet in the binary snapshot format (a header, the ordnance
+ *             dictionary, then one RECORDBYTES record per ship), replacing fileName
+ *             only once the snapshot is complete
+ *  *********************************************************************/
+
+    public static void saveSnapshot(ShipStorage ss, String fileName)
+    {
+        FleetVersion fleet = ss.snapshot().getFleetVersion(); // header count and records describe the same ships
+        FleetStore store = fleet.getStore();
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path temp = null;
+        FileChannel channel = null;
+        ByteBuffer out = ByteBuffer.allocate(BUFFERSIZE);
+        Map<String, Integer> ordnanceCodes = new LinkedHashMap<String, Integer>();
+        Ship ship;
+        byte[] text;
+
+        for (int ii = 0; ii < fleet.getPlaceCount(); ii++)
+        {
+            ship = fleet.isRemoved(ii) ? null : store.getShip(ii);
+
+            if ((ship instanceof FighterJet) && (!ordnanceCodes.containsKey(((FighterJet)ship).getOrdnance())))
+            {
+                ordnanceCodes.put(((FighterJet)ship).getOrdnance(), ordnanceCodes.size());
+            }
+        }
+
+        try
+        {
+            temp = target.resolveSibling(target.getFileName() + TEMPSUFFIX);
+            channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+
+            out.putInt(SNAPSHOTMAGIC).putShort(SNAPSHOTVERSION).putInt(fleet.getShipCount()).putInt(ordnanceCodes.size());
+
+            for (String ordnance : ordnanceCodes.keySet())
+            {
+                text = ordnance.getBytes(StandardCharsets.UTF_8);
+                makeRoom(out, channel, 4);
+                out.putInt(text.length);
+
+                for (int jj = 0; jj < text.length; jj = jj + out.remaining())
+                {
+                    makeRoom(out, channel, 1);
+                    out.put(text, jj, Math.min(out.remaining(), text.length - jj));
+                }
+            }
+
+            for (int ii = 0; ii < fleet.getPlaceCount(); ii++)
+            {
+                if (!fleet.isRemoved(ii))
+                {
+                    makeRoom(out, channel, RECORDBYTES);
+                    putRecord(out, store.getShip(ii), ordnanceCodes);
+                }
+            }
+            drain(out, channel);
+
+            channel.force(true);
+            channel.close();
+            moveIntoPlace(temp, target);
+        }
+        catch (IOException e)
+        {
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ex2)
+                {
+                }
+            }
+
+            if (temp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(temp);
+                }
+                catch (IOException ex2)
+                {
+                }
+            }
+            System.out.println("Error in writing to file " + e.getMessage());
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: loadSnapshot
+ *  Import: ss (ShipStorage), fileName (String)
+ *  Export: report (LoadReport)
+ *  Assertion: adds the ships of a file written by saveSnapshot to the storage, records
+ *             that fail validation are counted in the report by their record number,
+ *             a header or dictionary that does not fit in the file is refused before
+ *             anything is allocated for it
+ *  *********************************************************************/
+
+    public static LoadReport loadSnapshot(ShipStorage ss, String fileName)
+    {
+        LoadReport report = new LoadReport();
+        FileChannel channel = null;
+        ByteBuffer in = ByteBuffer.allocate(BUFFERSIZE);
+        long startTime = System.nanoTime();
+        int shipCount;
+        int ordnanceCount;
+        int textLength;
+        long textLeft;  // bytes of the file left for ordnance text once the rest is counted
+        String[] ordnances;
+        byte[] text;
+        List<Ship> batch;
+
+        in.flip(); // starts empty
+
+        try
+        {
+            channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+
+            in = fillBuffer(channel, in, 14);
+
+            if (in.getInt() != SNAPSHOTMAGIC)
+            {
+                throw new IOException(fileName + " is not a fleet snapshot");
+            }
+
+            if (in.getShort() != SNAPSHOTVERSION)
+            {
+                throw new IOException("Unsupported snapshot version in " + fileName);
+            }
+            shipCount = in.getInt();
+            ordnanceCount = in.getInt();
+
+            textLeft = channel.size() - 14L - (4L * ordnanceCount) - ((long)RECORDBYTES * shipCount);
+
+            if ((shipCount < 0) || (ordnanceCount < 0) || (textLeft < 0))
+            {
+                throw new IOException("Corrupt snapshot header in " + fileName);
+            }
+            ordnances = new String[ordnanceCount];
+
+            for (int ii = 0; ii < ordnances.length; ii++)
+            {
+                in = fillBuffer(channel, in, 4);
+                textLength = in.getInt();
+
+                if ((textLength < 0) || (textLength > textLeft))
+                {
+                    throw new IOException("Corrupt ordnance dictionary in " + fileName);
+                }
+                textLeft = textLeft - textLength;
+                text = new byte[textLength];
+                in = fillBuffer(channel, in, textLength);
+                in.get(text);
+                ordnances[ii] = new String(text, StandardCharsets.UTF_8);
+            }
+
+            ss.ensureCapacity(ss.getPlaceCount() + shipCount);
+            batch = new ArrayList<Ship>(Math.min(shipCount, SNAPSHOTBATCH));
+
+            // the decoded ships are new and never handed out, so they are adopted, not copied,
+            // a batch at a time so the writers' lock is taken once a batch
+            for (int ii = 0; ii < shipCount; ii++)
+            {
+                in = fillBuffer(channel, in, RECORDBYTES);
+
+                try
+                {
+                    batch.add(getRecord(in, ordnances));
+                    report.addLoaded();
+                }
+                catch (IllegalArgumentException e)
+                {
+                    report.addError(ii + 1, e.getMessage());
+                }
+
+                if (batch.size() == SNAPSHOTBATCH)
+                {
+                    ss.adoptShips(batch);
+                    batch.clear();
+                }
+            }
+            ss.adoptShips(batch);
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ex2)
+                {
+                }
+            }
+            System.out.println("Error in file processing " + e.getMessage());
+        }
+        report.setElapsedNanos(System.nanoTime() - startTime);
+        return report;
+    }
+
+
+/***********************************************************************
+ *  Submodule: putRecord
+ *  Import: out (ByteBuffer), ship (Ship), ordnanceCodes (Map)
+ *  Export: none
+ *  Assertion: writes the ship as one RECORDBYTES record
+ *  *********************************************************************/
+
+    private static void putRecord(ByteBuffer out, Ship ship, Map<String, Integer> ordnanceCodes)
+    {
+        int serialKey = ship.getSerialKey();
+
+        out.put((byte)((ship instanceof Submarine) ? 'S' : 'F'));
+        out.putShort((short)(serialKey / 1000)).putShort((short)(serialKey % 1000));
+        out.putShort((short)ship.getYear());
+        out.put((byte)ship.getEngine().getCylinders());
+        out.put((byte)Engine.fuelCode(ship.getEngine().getFuel()));
+
+        if (ship instanceof Submarine)
+        {
+            out.putInt(Submarine.hullCode(((Submarine)ship).getHull()));
+            out.putDouble(((Submarine)ship).getMaxDepth());
+        }
+        else
+        {
+            out.putInt(ordnanceCodes.get(((FighterJet)ship).getOrdnance()));
+            out.putDouble(((FighterJet)ship).getWingSpan());
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: getRecord
+ *  Import: in (ByteBuffer), ordnances (array of String)
+ *  Export: ship (Ship)
+ *  Assertion: reads one RECORDBYTES record, the whole record is used up even when the
+ *             ship in it is invalid
+ *  *********************************************************************/
+
+    private static Ship getRecord(ByteBuffer in, String[] ordnances)
+    {
+        Ship ship;
+        byte shipChoice = in.get();
+        int XXX = in.getShort();
+        int YYY = in.getShort();
+        int year = in.getShort();
+        int cylinders = in.get();
+        int fuelCode = in.get();
+        int code = in.getInt();
+        double measure = in.getDouble(); // max depth or wing span
+        Engine engine;
+
+        if ((XXX < 0) || (XXX > 999) || (YYY < 0) || (YYY > 999))
+        {
+            throw new IllegalArgumentException("serial number");
+        }
+        engine = Engine.of(cylinders, Engine.fuelName(fuelCode));
+
+        if (shipChoice == 'S')
+        {
+            ship = new Submarine(Ship.unpackSerial((XXX * 1000) + YYY), year, Submarine.hullName(code), measure, engine);
+        }
+        else if ((shipChoice == 'F') && (code >= 0) && (code < ordnances.length))
+        {
+            ship = new FighterJet(Ship.unpackSerial((XXX * 1000) + YYY), year, measure, ordnances[code], engine);
+        }
+        else
+        {
+            throw new IllegalArgumentException("object");
+        }
+        return ship;
+    }
+
+
+/***********************************************************************
+ *  Submodule: makeRoom
+ *  Import: out (ByteBuffer), channel (FileChannel), needed (integer)
+ *  Export: none
+ *  Assertion: writes out to the channel first when it has less than needed bytes free
+ *  *********************************************************************/
+
+    private static void makeRoom(ByteBuffer out, FileChannel channel, int needed) throws IOException
+    {
+        if (out.remaining() < needed)
+        {
+            drain(out, channel);
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: fillBuffer
+ *  Import: channel (FileChannel), in (ByteBuffer), needed (integer)
+ *  Export: in (ByteBuffer)
+ *  Assertion: reads from the channel until in has at least needed unread bytes, growing
+ *             in when needed is more than it can hold, fails at the end of the file
+ *  *********************************************************************/
+
+    private static ByteBuffer fillBuffer(FileChannel channel, ByteBuffer in, int needed) throws IOException
+    {
+        ByteBuffer bigger;
+
+        if (in.remaining() < needed)
+        {
+            if (needed > in.capacity())
+            {
+                bigger = ByteBuffer.allocate(needed);
+                bigger.put(in);
+                in = bigger;
+            }
+            else
+            {
+                in.compact();
+            }
+
+            while (in.position() < needed)
+            {
+                if (channel.read(in) < 0)
+                {
+                    throw new IOException("Snapshot ends part way through");
+                }
+            }
+            in.flip();
+        }
+        return in;
+    }
 }
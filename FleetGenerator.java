@@ -0,0 +1,450 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Makes large fleets for load testing from a seed, the same seed
+ *          always gives the same rows. Rows pass every validator unless
+ *          they are picked to be invalid, some repeat an earlier row, and
+ *          they are written straight to a file or added to a storage
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.io.*;
+import java.nio.charset.*;
+
+public class FleetGenerator
+{
+    // class constants
+    public static final double DEFAULTDUPLICATES = 0.05;
+    public static final double DEFAULTINVALID = 0.0;
+    public static final int WINDOW = 65536;      // duplicates repeat one of the last WINDOW new rows, a power of two
+    public static final int DEFECTS = 8;         // kinds of invalid row
+    public static final int ROWBYTES = 64;       // room for the longest row
+    public static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    public static final String[] FUELS = {Engine.BAT, Engine.DSL, Engine.BIO};
+    public static final String[] HULLS = {Submarine.STL, Submarine.ALY, Submarine.TIT};
+    public static final String[] ORDNANCES = {"missiles", "cannon", "rockets", "bombs"};
+
+
+    // private class fields
+    private double duplicateRatio;
+    private double invalidRatio;
+    private long state;                          // moves on by GOLDEN for every random number
+    private long[] window;                       // seeds of the most recent new rows
+    private long newRows;
+    private int defect;                          // kind of invalid row picked by nextRow, 0 when valid
+    private byte[][] fuelBytes;
+    private byte[][] hullBytes;
+    private byte[][] ordnanceBytes;
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: seed (long)
+ * Export: address of new FleetGenerator
+ * Assertion: DEFAULTDUPLICATES of the rows repeat an earlier one, none are invalid
+ * ************************************************************************/
+
+    public FleetGenerator(long seed)
+    {
+        this(seed, DEFAULTDUPLICATES, DEFAULTINVALID);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: seed (long), inDuplicateRatio (real), inInvalidRatio (real)
+ * Export: address of new FleetGenerator
+ * Assertion: about inDuplicateRatio of the rows repeat an earlier row and about
+ *            inInvalidRatio break one validator, fails unless both are between 0
+ *            and 1 and add up to at most 1
+ * ************************************************************************/
+
+    public FleetGenerator(long seed, double inDuplicateRatio, double inInvalidRatio)
+    {
+        if (!((inDuplicateRatio >= 0.0) && (inInvalidRatio >= 0.0)
+              && (inDuplicateRatio + inInvalidRatio <= 1.0)))
+        {
+            throw new IllegalArgumentException("Invalid ratio");
+        }
+        duplicateRatio = inDuplicateRatio;
+        invalidRatio = inInvalidRatio;
+        state = seed;
+        window = new long[WINDOW];
+        newRows = 0;
+        defect = 0;
+        fuelBytes = encode(FUELS);
+        hullBytes = encode(HULLS);
+        ordnanceBytes = encode(ORDNANCES);
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: writeFile
+ * Import: fileName (String), rows (long)
+ * Export: none
+ * Assertion: writes the next rows rows to fileName in the format readFile loads
+ * ************************************************************************/
+
+    public void writeFile(String fileName, long rows) throws IOException
+    {
+        FileOutputStream fileStrm = new FileOutputStream(fileName);
+
+        try
+        {
+            writeRows(fileStrm, rows);
+        }
+        finally
+        {
+            fileStrm.close();
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: writeRows
+ * Import: out (OutputStream), rows (long)
+ * Export: none
+ * Assertion: writes the next rows rows to out, one line each, straight into a
+ *            byte buffer so no Strings are made
+ * ************************************************************************/
+
+    public void writeRows(OutputStream out, long rows) throws IOException
+    {
+        byte[] buffer = new byte[FileManager.BUFFERSIZE];
+        int length = 0;
+        long rowSeed;
+
+        for (long ii = 0; ii < rows; ii++)
+        {
+            if (length > buffer.length - ROWBYTES)
+            {
+                out.write(buffer, 0, length);
+                length = 0;
+            }
+            rowSeed = nextRow();
+            length = appendRow(buffer, length, rowSeed, defect);
+        }
+        out.write(buffer, 0, length);
+        out.flush();
+    }
+
+
+/***************************************************************************
+ * Submodule: fill
+ * Import: ss (ShipStorage), rows (long)
+ * Export: added (long)
+ * Assertion: adds the ships of the next rows rows to ss, invalid rows are left out
+ *            just as readFile leaves them out, and returns how many were added
+ * ************************************************************************/
+
+    public long fill(ShipStorage ss, long rows)
+    {
+        long added = 0;
+        long rowSeed;
+
+        for (long ii = 0; ii < rows; ii++)
+        {
+            rowSeed = nextRow();
+
+            if (defect == 0)
+            {
+                ss.addShip(makeShip(rowSeed));
+                added++;
+            }
+        }
+        return added;
+    }
+
+
+/***************************************************************************
+ * Submodule: nextShip
+ * Import: none
+ * Export: ship (Ship)
+ * Assertion: the ship of the next valid row, invalid rows are passed over
+ * ************************************************************************/
+
+    public Ship nextShip()
+    {
+        long rowSeed = nextRow();
+
+        while (defect != 0)
+        {
+            rowSeed = nextRow();
+        }
+        return makeShip(rowSeed);
+    }
+
+
+/***************************************************************************
+ * Submodule: main
+ * Import: args (ARRAY OF String)
+ * Export: none
+ * Assertion: java FleetGenerator FILE ROWS [SEED [DUPLICATES [INVALID]]] writes
+ *            ROWS rows to FILE and prints how fast
+ * ************************************************************************/
+
+    public static void main(String[] args)
+    {
+        FleetGenerator generator;
+        long rows;
+        long start;
+        double seconds;
+
+        try
+        {
+            if (args.length < 2)
+            {
+                throw new IllegalArgumentException("Usage: java FleetGenerator FILE ROWS [SEED [DUPLICATES "
+                                                   + "[INVALID]]].");
+            }
+            rows = Long.parseLong(args[1]);
+            generator = new FleetGenerator((args.length > 2) ? Long.parseLong(args[2]) : 42L,
+                                           (args.length > 3) ? Double.parseDouble(args[3]) : DEFAULTDUPLICATES,
+                                           (args.length > 4) ? Double.parseDouble(args[4]) : DEFAULTINVALID);
+            start = System.nanoTime();
+            generator.writeFile(args[0], rows);
+            seconds = (System.nanoTime() - start) / 1.0e9;
+            System.out.println(String.format("%d rows written to %s in %.2f s (%.0f rows/s)", rows, args[0],
+                                             seconds, rows / seconds));
+        }
+        catch (Exception e)
+        {
+            System.out.println(e.getMessage() + " Sorry!");
+        }
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: nextRow
+ * Import: none
+ * Export: rowSeed (long)
+ * Assertion: picks the next row, a new valid one, a repeat of one of the last
+ *            WINDOW new rows or an invalid one, and sets defect to match
+ * ************************************************************************/
+
+    private long nextRow()
+    {
+        double pick = (nextLong() >>> 11) * 0x1.0p-53;
+        long rowSeed;
+
+        defect = 0;
+
+        if (pick < invalidRatio)
+        {
+            rowSeed = nextLong();
+            defect = 1 + (int)((nextLong() >>> 1) % DEFECTS);
+        }
+        else if ((pick < invalidRatio + duplicateRatio) && (newRows > 0))
+        {
+            rowSeed = window[(int)((nextLong() >>> 1) % Math.min(newRows, WINDOW))];
+        }
+        else
+        {
+            rowSeed = nextLong();
+            window[(int)(newRows & (WINDOW - 1))] = rowSeed;
+            newRows++;
+        }
+        return rowSeed;
+    }
+
+
+    private long nextLong()
+    {
+        state = state + GOLDEN;
+        return mix(state);
+    }
+
+
+/***************************************************************************
+ * Submodule: mix
+ * Import: z (long)
+ * Export: mixed (long)
+ * Assertion: the SplitMix64 finaliser, every bit of z moves every bit of mixed
+ * ************************************************************************/
+
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+
+/***************************************************************************
+ * Submodule: makeShip
+ * Import: rowSeed (long)
+ * Export: ship (Ship)
+ * Assertion: the valid ship of the row, the same values appendRow writes
+ * ************************************************************************/
+
+    private static Ship makeShip(long rowSeed)
+    {
+        Ship ship;
+        long common = mix(rowSeed) >>> 1;
+        long own = mix(rowSeed ^ GOLDEN) >>> 1;
+        int prefix = 100 + (int)(common % 201);
+        int suffix = 1 + (int)((common / 201) % 999);
+        int year = Ship.MINYEAR + (int)((common / 201 / 999) % (Ship.MAXYEAR - Ship.MINYEAR + 1));
+        long rest = common / 201 / 999 / (Ship.MAXYEAR - Ship.MINYEAR + 1);
+        Engine engine = Engine.of(Engine.MINCYL + (int)(rest % (Engine.MAXCYL - Engine.MINCYL + 1)),
+                                  FUELS[(int)((rest / (Engine.MAXCYL - Engine.MINCYL + 1)) % FUELS.length)]);
+        String serialNum = Ship.unpackSerial(prefix * 1000 + suffix);
+
+        if ((own & 1) == 0)
+        {
+            ship = new Submarine(serialNum, year, HULLS[(int)((own >>> 1) % HULLS.length)],
+                                 -depthTenths(own) / 10.0, engine);
+        }
+        else
+        {
+            ship = new FighterJet(serialNum, year, spanHundredths(own) / 100.0,
+                                  ORDNANCES[(int)((own >>> 1) % ORDNANCES.length)], engine);
+        }
+        return ship;
+    }
+
+
+/***************************************************************************
+ * Submodule: appendRow
+ * Import: buffer (ARRAY OF byte), length (integer), rowSeed (long), kind (integer)
+ * Export: length (integer)
+ * Assertion: writes the row's line after length and returns the new length, kind 0
+ *            is the valid row and 1 to DEFECTS each break a different validator
+ * ************************************************************************/
+
+    private int appendRow(byte[] buffer, int length, long rowSeed, int kind)
+    {
+        long common = mix(rowSeed) >>> 1;
+        long own = mix(rowSeed ^ GOLDEN) >>> 1;
+        boolean submarine = ((own & 1) == 0);
+        int year = Ship.MINYEAR + (int)((common / 201 / 999) % (Ship.MAXYEAR - Ship.MINYEAR + 1));
+        long rest = common / 201 / 999 / (Ship.MAXYEAR - Ship.MINYEAR + 1);
+        int cylinders = Engine.MINCYL + (int)(rest % (Engine.MAXCYL - Engine.MINCYL + 1));
+        int fuel = (int)((rest / (Engine.MAXCYL - Engine.MINCYL + 1)) % FUELS.length);
+        int pos = length;
+
+        buffer[pos++] = (byte)((kind == 1) ? 'X' : (submarine ? 'S' : 'F'));
+        buffer[pos++] = ',';
+        pos = appendDigits(buffer, pos, 100 + (int)(common % 201), 3);
+        buffer[pos++] = '.';
+        pos = appendDigits(buffer, pos, (kind == 2) ? 0 : 1 + (int)((common / 201) % 999), 3);
+        buffer[pos++] = ',';
+        pos = appendDigits(buffer, pos, (kind == 3) ? Ship.MAXYEAR + 1 : year, 4);
+        buffer[pos++] = ',';
+        pos = appendDigits(buffer, pos, (kind == 4) ? Engine.MAXCYL + 1 : cylinders,
+                           (cylinders < 10) && (kind != 4) ? 1 : 2);
+        buffer[pos++] = ',';
+        pos = appendText(buffer, pos, (kind == 5) ? ordnanceBytes[0] : fuelBytes[fuel]);
+
+        if (submarine)
+        {
+            buffer[pos++] = ',';
+            pos = appendText(buffer, pos, (kind == 6) ? ordnanceBytes[0] : hullBytes[(int)((own >>> 1) % HULLS.length)]);
+            buffer[pos++] = ',';
+            pos = appendDepth(buffer, pos, (kind == 7) ? 5001 : depthTenths(own));
+        }
+        else
+        {
+            buffer[pos++] = ',';
+            pos = appendSpan(buffer, pos, (kind == 7) ? 2561 : spanHundredths(own));
+            buffer[pos++] = ',';
+
+            if (kind != 6)
+            {
+                pos = appendText(buffer, pos, ordnanceBytes[(int)((own >>> 1) % ORDNANCES.length)]);
+            }
+        }
+
+        if (kind == 8)
+        {
+            buffer[pos++] = ',';  // an eighth field
+            buffer[pos++] = '0';
+        }
+        buffer[pos++] = '\n';
+        return pos;
+    }
+
+
+/***************************************************************************
+ * Submodule: depthTenths
+ * Import: own (long)
+ * Export: tenths (integer)
+ * Assertion: how deep the submarine goes in tenths of a unit, 0 to 5000
+ * ************************************************************************/
+
+    private static int depthTenths(long own)
+    {
+        return (int)((own >>> 3) % 5001);
+    }
+
+
+/***************************************************************************
+ * Submodule: spanHundredths
+ * Import: own (long)
+ * Export: hundredths (integer)
+ * Assertion: the fighter jet's wing span in hundredths, MINSPAN to MAXSPAN
+ * ************************************************************************/
+
+    private static int spanHundredths(long own)
+    {
+        return 220 + (int)((own >>> 3) % 2341);
+    }
+
+
+    private static int appendDepth(byte[] buffer, int pos, int tenths)
+    {
+        if (tenths != 0)
+        {
+            buffer[pos++] = '-';
+        }
+        pos = appendDigits(buffer, pos, tenths / 10, (tenths >= 1000) ? 3 : ((tenths >= 100) ? 2 : 1));
+        buffer[pos++] = '.';
+        return appendDigits(buffer, pos, tenths % 10, 1);
+    }
+
+
+    private static int appendSpan(byte[] buffer, int pos, int hundredths)
+    {
+        pos = appendDigits(buffer, pos, hundredths / 100, (hundredths >= 1000) ? 2 : 1);
+        buffer[pos++] = '.';
+        return appendDigits(buffer, pos, hundredths % 100, 2);
+    }
+
+
+/***************************************************************************
+ * Submodule: appendDigits
+ * Import: buffer (ARRAY OF byte), pos (integer), value (integer), width (integer)
+ * Export: pos (integer)
+ * Assertion: writes value as exactly width digits, zero padded, after pos
+ * ************************************************************************/
+
+    private static int appendDigits(byte[] buffer, int pos, int value, int width)
+    {
+        for (int ii = pos + width - 1; ii >= pos; ii--)
+        {
+            buffer[ii] = (byte)('0' + value % 10);
+            value = value / 10;
+        }
+        return pos + width;
+    }
+
+
+    private static int appendText(byte[] buffer, int pos, byte[] text)
+    {
+        System.arraycopy(text, 0, buffer, pos, text.length);
+        return pos + text.length;
+    }
+
+
+    private static byte[][] encode(String[] names)
+    {
+        byte[][] encoded = new byte[names.length][];
+
+        for (int ii = 0; ii < names.length; ii++)
+        {
+            encoded[ii] = names[ii].getBytes(StandardCharsets.US_ASCII);
+        }
+        return encoded;
+    }
+}
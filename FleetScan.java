@@ -0,0 +1,473 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Runs the whole fleet scans of a ShipStorage on a ForkJoinPool,
+ *          splitting the ships into ranges of at most threshold ships, with
+ *          the same answers as scanning them one after another
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class FleetScan
+{
+    // class constants
+    public static final int DEFAULTTHRESHOLD = 65536; // fleets this size or smaller are scanned on the calling thread
+    public static final int PARTITIONSPERTHREAD = 4;
+
+
+    // private class fields
+    private ForkJoinPool pool;
+    private int threshold;
+
+
+/***************************************************************************
+ * Default Constructor
+ * Import: none
+ * Export: none
+ * Assertion: scans on the common pool, splitting fleets larger than DEFAULTTHRESHOLD
+ * ************************************************************************/
+
+    public FleetScan()
+    {
+        this(ForkJoinPool.commonPool(), DEFAULTTHRESHOLD);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inPool (ForkJoinPool), inThreshold (integer)
+ * Export: address of new FleetScan
+ * Assertion: scans on inPool, splitting fleets larger than inThreshold, fails for a
+ *            null pool or a threshold below 1
+ * ************************************************************************/
+
+    public FleetScan(ForkJoinPool inPool, int inThreshold)
+    {
+        if (inPool == null)
+        {
+            throw new IllegalArgumentException("Invalid pool");
+        }
+        else if (inThreshold < 1)
+        {
+            throw new IllegalArgumentException("Invalid threshold");
+        }
+        pool = inPool;
+        threshold = inThreshold;
+    }
+
+
+// ACCESSORS
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+
+    public int getThreshold()
+    {
+        return threshold;
+    }
+
+
+/***************************************************************************
+ * Submodule: fastest
+ * Import: fleet (FleetVersion), travelDistance (integer), count (integer)
+ * Export: shipIndex (integer)
+ * Assertion: index of the first ship in the first count places of fleet with the lowest
+ *            travel time, as a min-reduction over ranges that skips removed ships, -1 when
+ *            no ship has a time below MAX_VALUE
+ * ************************************************************************/
+
+    public int fastest(FleetVersion fleet, int travelDistance, int count)
+    {
+        int shipIndex;
+
+        if (count <= threshold)
+        {
+            shipIndex = fastestIn(fleet, travelDistance, 0, count);
+        }
+        else
+        {
+            shipIndex = pool.invoke(ForkJoinTask.adapt(() -> fastestSplit(fleet, travelDistance, 0, count)));
+        }
+        return shipIndex;
+    }
+
+
+/***************************************************************************
+ * Submodule: duplicates
+ * Import: fleet (FleetVersion), count (integer)
+ * Export: groups (List OF ARRAY OF integer)
+ * Assertion: one {first index, count} pair for each group of equal ships with more
+ *            than one ship in the first count places of fleet, removed ships left out, in
+ *            order of first appearance
+ * ************************************************************************/
+
+    public List<int[]> duplicates(FleetVersion fleet, int count)
+    {
+        List<int[]> groups;
+
+        if (count <= threshold)
+        {
+            groups = duplicatesIn(fleet, count);
+        }
+        else
+        {
+            groups = parallelDuplicates(fleet, count);
+        }
+        return groups;
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: fastestSplit
+ * Import: fleet (FleetVersion), travelDistance (integer), from (integer), to (integer)
+ * Export: shipIndex (integer)
+ * Assertion: fastest ship from (inclusive) to to (exclusive), halving the range on
+ *            the pool until it is no longer than threshold
+ * ************************************************************************/
+
+    private int fastestSplit(FleetVersion fleet, int travelDistance, int from, int to)
+    {
+        int shipIndex;
+        int mid;
+        int leftIndex;
+        int rightIndex;
+        ForkJoinTask<Integer> right;
+
+        if (to - from <= threshold)
+        {
+            shipIndex = fastestIn(fleet, travelDistance, from, to);
+        }
+        else
+        {
+            mid = (from + to) >>> 1;
+            right = ForkJoinTask.adapt(() -> fastestSplit(fleet, travelDistance, mid, to)).fork();
+            leftIndex = fastestSplit(fleet, travelDistance, from, mid);
+            rightIndex = right.join();
+
+            // the left half wins a tie, so the first ship still wins as in a single scan
+            shipIndex = leftIndex;
+
+            if (travelTime(fleet, travelDistance, rightIndex) < travelTime(fleet, travelDistance, leftIndex))
+            {
+                shipIndex = rightIndex;
+            }
+        }
+        return shipIndex;
+    }
+
+
+/***************************************************************************
+ * Submodule: fastestIn
+ * Import: fleet (FleetVersion), travelDistance (integer), from (integer), to (integer)
+ * Export: shipIndex (integer)
+ * Assertion: checks the ships from (inclusive) to to (exclusive) that are not removed for
+ *            the lowest travel time, first one wins a tie, -1 when none is below MAX_VALUE
+ * ************************************************************************/
+
+    private static int fastestIn(FleetVersion fleet, int travelDistance, int from, int to)
+    {
+        double fastestTime = Double.MAX_VALUE;
+        double shipTime;
+        int shipIndex = -1;
+        FleetStore store = fleet.getStore();
+
+        for (int ii = from; ii < to; ii++)
+        {
+            if (!fleet.isRemoved(ii))
+            {
+                shipTime = store.calcTravel(ii, travelDistance);
+
+                if (shipTime < fastestTime)
+                {
+                    shipIndex = ii;
+                    fastestTime = shipTime;
+                }
+            }
+        }
+        return shipIndex;
+    }
+
+
+/***************************************************************************
+ * Submodule: travelTime
+ * Import: fleet (FleetVersion), travelDistance (integer), shipIndex (integer)
+ * Export: time (real)
+ * Assertion: travel time of the ship at shipIndex, MAX_VALUE for -1 (no ship)
+ * ************************************************************************/
+
+    private static double travelTime(FleetVersion fleet, int travelDistance, int shipIndex)
+    {
+        double time = Double.MAX_VALUE;
+
+        if (shipIndex >= 0)
+        {
+            time = fleet.getStore().calcTravel(shipIndex, travelDistance);
+        }
+        return time;
+    }
+
+
+/***************************************************************************
+ * Submodule: parallelDuplicates
+ * Import: fleet (FleetVersion), count (integer)
+ * Export: groups (List OF ARRAY OF integer)
+ * Assertion: duplicates for a fleet larger than threshold, hashing ranges of ships on
+ *            the pool, then sorting the places into hash partitions in one counting pass,
+ *            then grouping each partition on the pool, then putting the groups back in
+ *            order of first appearance
+ * ************************************************************************/
+
+    private List<int[]> parallelDuplicates(FleetVersion fleet, int count)
+    {
+        int[] hashes = new int[count];
+        int partitions = pool.getParallelism() * PARTITIONSPERTHREAD;
+        int[] starts = new int[partitions + 1];
+        int[] fill;
+        int[] places;
+        List<Callable<List<int[]>>> tasks = new ArrayList<Callable<List<int[]>>>();
+        List<int[]> groups = new ArrayList<int[]>();
+
+        pool.invoke(ForkJoinTask.adapt(() -> hashSplit(fleet, hashes, 0, count)));
+
+        // equal ships have equal hashes, so every group lies inside one partition, and each
+        // partition gets its own run of places, in order, so no task looks at another's ships
+        for (int ii = 0; ii < count; ii++)
+        {
+            if (!fleet.isRemoved(ii))
+            {
+                starts[partitionOf(hashes[ii], partitions) + 1]++;
+            }
+        }
+        for (int ii = 0; ii < partitions; ii++)
+        {
+            starts[ii + 1] = starts[ii + 1] + starts[ii];
+        }
+        fill = Arrays.copyOf(starts, partitions);
+        places = new int[starts[partitions]];
+
+        for (int ii = 0; ii < count; ii++)
+        {
+            if (!fleet.isRemoved(ii))
+            {
+                places[fill[partitionOf(hashes[ii], partitions)]++] = ii;
+            }
+        }
+
+        for (int ii = 0; ii < partitions; ii++)
+        {
+            final int from = starts[ii];
+            final int to = starts[ii + 1];
+
+            tasks.add(() -> duplicatesIn(fleet, hashes, places, from, to));
+        }
+
+        for (Future<List<int[]>> result : pool.invokeAll(tasks))
+        {
+            try
+            {
+                groups.addAll(result.get());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Duplicate search interrupted");
+            }
+            catch (ExecutionException e)
+            {
+                rethrow(e.getCause());
+            }
+        }
+
+        groups.sort((groupOne, groupTwo) -> Integer.compare(groupOne[0], groupTwo[0]));
+        return groups;
+    }
+
+
+/***************************************************************************
+ * Submodule: hashSplit
+ * Import: fleet (FleetVersion), hashes (ARRAY OF integer), from (integer), to (integer)
+ * Export: none
+ * Assertion: fills hashes from (inclusive) to to (exclusive) with the hash of each ship
+ *            that is not removed, halving the range on the pool until it is no longer than
+ *            threshold
+ * ************************************************************************/
+
+    private void hashSplit(FleetVersion fleet, int[] hashes, int from, int to)
+    {
+        int mid;
+        ForkJoinTask<?> right;
+
+        if (to - from <= threshold)
+        {
+            for (int ii = from; ii < to; ii++)
+            {
+                if (!fleet.isRemoved(ii))
+                {
+                    hashes[ii] = fleet.getStore().getShip(ii).hashCode();
+                }
+            }
+        }
+        else
+        {
+            mid = (from + to) >>> 1;
+            right = ForkJoinTask.adapt(() -> hashSplit(fleet, hashes, mid, to)).fork();
+            hashSplit(fleet, hashes, from, mid);
+            right.join();
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: partitionOf
+ * Import: hash (integer), partitions (integer)
+ * Export: partition (integer)
+ * Assertion: the partition a ship with the hash is grouped in, the high bits are mixed
+ *            in so hashes that differ only there still spread out
+ * ************************************************************************/
+
+    private static int partitionOf(int hash, int partitions)
+    {
+        return Math.floorMod(hash ^ (hash >>> 16), partitions);
+    }
+
+
+/***************************************************************************
+ * Submodule: duplicatesIn
+ * Import: fleet (FleetVersion), hashes (ARRAY OF integer), places (ARRAY OF integer),
+ *         from (integer), to (integer)
+ * Export: groups (List OF ARRAY OF integer)
+ * Assertion: {first index, count} of each group with more than one ship among places
+ *            from (inclusive) to to (exclusive), sorting them by hash so only ships that
+ *            share a hash with another one are built again to be compared
+ * ************************************************************************/
+
+    private static List<int[]> duplicatesIn(FleetVersion fleet, int[] hashes, int[] places, int from, int to)
+    {
+        long[] keyed = new long[to - from];
+        List<int[]> groups = new ArrayList<int[]>();
+        Map<Ship, int[]> seen = new LinkedHashMap<Ship, int[]>();
+        Ship ship;
+        int[] group;
+        int runStart = 0;
+        int runEnd;
+
+        // hash in the high half, place in the low half, so a run of one hash stays in place order
+        for (int ii = from; ii < to; ii++)
+        {
+            keyed[ii - from] = ((long)hashes[places[ii]] << 32) | places[ii];
+        }
+        Arrays.sort(keyed);
+
+        while (runStart < keyed.length)
+        {
+            runEnd = runStart + 1;
+
+            while ((runEnd < keyed.length) && ((keyed[runEnd] >> 32) == (keyed[runStart] >> 32)))
+            {
+                runEnd = runEnd + 1;
+            }
+
+            // a ship alone with its hash has no equal, so only longer runs are built
+            if (runEnd - runStart > 1)
+            {
+                seen.clear();
+
+                for (int ii = runStart; ii < runEnd; ii++)
+                {
+                    ship = fleet.getStore().getShip((int)keyed[ii]);
+                    group = seen.get(ship);
+
+                    if (group == null)
+                    {
+                        seen.put(ship, new int[] {(int)keyed[ii], 1});
+                    }
+                    else
+                    {
+                        group[1] = group[1] + 1;
+                    }
+                }
+
+                for (int[] candidate : seen.values())
+                {
+                    if (candidate[1] > 1)
+                    {
+                        groups.add(candidate);
+                    }
+                }
+            }
+            runStart = runEnd;
+        }
+        return groups;
+    }
+
+
+/***************************************************************************
+ * Submodule: duplicatesIn
+ * Import: fleet (FleetVersion), count (integer)
+ * Export: groups (List OF ARRAY OF integer)
+ * Assertion: {first index, count} of each group with more than one ship in the first
+ *            count places, removed ships are left out, on the calling thread
+ * ************************************************************************/
+
+    private static List<int[]> duplicatesIn(FleetVersion fleet, int count)
+    {
+        Map<Ship, int[]> seen = new LinkedHashMap<Ship, int[]>(Math.max(16, count * 2));
+        List<int[]> groups = new ArrayList<int[]>();
+        Ship ship;
+        int[] group;
+
+        for (int ii = 0; ii < count; ii++)
+        {
+            if (!fleet.isRemoved(ii))
+            {
+                ship = fleet.getStore().getShip(ii);
+                group = seen.get(ship);
+
+                if (group == null)
+                {
+                    seen.put(ship, new int[] {ii, 1});
+                }
+                else
+                {
+                    group[1] = group[1] + 1;
+                }
+            }
+        }
+
+        // a LinkedHashMap keeps first appearances in order
+        for (int[] candidate : seen.values())
+        {
+            if (candidate[1] > 1)
+            {
+                groups.add(candidate);
+            }
+        }
+        return groups;
+    }
+
+
+/***************************************************************************
+ * Submodule: rethrow
+ * Import: cause (Throwable)
+ * Export: none
+ * Assertion: throws the failure of a partition as it was when it is unchecked, so an
+ *            Error such as OutOfMemoryError is not hidden, and wraps anything else
+ * ************************************************************************/
+
+    private static void rethrow(Throwable cause)
+    {
+        if (cause instanceof RuntimeException)
+        {
+            throw (RuntimeException)cause;
+        }
+        else if (cause instanceof Error)
+        {
+            throw (Error)cause;
+        }
+        throw new IllegalStateException("Duplicate search failed", cause);
+    }
+}
@@ -0,0 +1,230 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Holds the ships of a ShipStorage in the order they were added,
+ *          each subclass decides how the ships are laid out in memory. One
+ *          thread writes at a time, other threads only read ships below a
+ *          count the writer published after storing them
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.io.*;
+import java.util.function.*;
+
+public abstract class FleetStore
+{
+    // class constants
+    public static final int CHUNKSIZE = 1024; // ships per chunk, must be a power of two
+    public static final int CHUNKSHIFT = 10;
+    public static final int CHUNKMASK = CHUNKSIZE - 1;
+    public static final int MINCHUNKS = 4;
+
+
+    // private class fields
+    private boolean readOnly; // set on stores made by snapshot
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: ensureCapacity
+ * Import: capacity (integer)
+ * Export: none
+ * Assertion: makes room for at least capacity ships without moving stored ones
+ * ************************************************************************/
+
+    public abstract void ensureCapacity(int capacity);
+
+
+/***************************************************************************
+ * Submodule: addShip
+ * Import: ship (Ship)
+ * Export: none
+ * Assertion: stores the ship at the end, later changes to the ship passed in
+ *            never reach the store
+ * ************************************************************************/
+
+    public abstract void addShip(Ship ship);
+
+
+/***************************************************************************
+ * Submodule: adoptShip
+ * Import: ship (Ship)
+ * Export: none
+ * Assertion: stores a ship the caller will never change again, so stores that
+ *            keep ship objects can keep it without copying
+ * ************************************************************************/
+
+    public void adoptShip(Ship ship)
+    {
+        addShip(ship);
+    }
+
+
+/***************************************************************************
+ * Submodule: markRemoved
+ * Import: index (integer)
+ * Export: none
+ * Assertion: notes in the store that the ship at a valid index was removed, for a
+ *            store kept in a file to find again when it is opened, a store on the
+ *            heap is gone with the program and keeps nothing
+ * ************************************************************************/
+
+    public void markRemoved(int index)
+    {
+    }
+
+
+/***************************************************************************
+ * Submodule: compact
+ * Import: keep (IntPredicate)
+ * Export: compacted (FleetStore)
+ * Assertion: a new store holding only the ships whose index passes keep, in the same
+ *            order, to be written from now on, this store turns read-only and is left
+ *            as it was, so readers and snapshots still on it keep the ships they had
+ * ************************************************************************/
+
+    public abstract FleetStore compact(IntPredicate keep);
+
+
+/***************************************************************************
+ * Submodule: close
+ * Import: none
+ * Export: none
+ * Assertion: lets go of any files the store keeps its ships in, a store on the heap has none
+ * ************************************************************************/
+
+    public void close() throws IOException
+    {
+    }
+
+
+/***************************************************************************
+ * Submodule: markReadOnly
+ * Import: none
+ * Export: none
+ * Assertion: every change to this store fails from now on
+ * ************************************************************************/
+
+    protected void markReadOnly()
+    {
+        readOnly = true;
+    }
+
+
+/***************************************************************************
+ * Submodule: checkWritable
+ * Import: none
+ * Export: none
+ * Assertion: fails if the store is a read-only snapshot
+ * ************************************************************************/
+
+    protected void checkWritable()
+    {
+        if (readOnly)
+        {
+            throw new IllegalArgumentException("Store is a read-only snapshot");
+        }
+    }
+
+
+// ACCESSORS
+/***************************************************************************
+ * Submodule: getShip
+ * Import: index (integer)
+ * Export: ship (Ship)
+ * Assertion: the ship at a valid index, 0 to getShipCount (exclusive)
+ * ************************************************************************/
+
+    public abstract Ship getShip(int index);
+
+
+/***************************************************************************
+ * Submodule: copyShip
+ * Import: index (integer)
+ * Export: ship (Ship)
+ * Assertion: a copy of the ship at a valid index, which the caller may change without
+ *            changing the store or its indexes
+ * ************************************************************************/
+
+    public Ship copyShip(int index)
+    {
+        return getShip(index).clone();
+    }
+
+
+    public abstract int getShipCount();
+
+
+/***************************************************************************
+ * Submodule: isMarkedRemoved
+ * Import: index (integer)
+ * Export: removed (boolean)
+ * Assertion: markRemoved was called for the ship at a valid index, by this or an
+ *            earlier run of the program
+ * ************************************************************************/
+
+    public boolean isMarkedRemoved(int index)
+    {
+        return false;
+    }
+
+
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+
+/***************************************************************************
+ * Submodule: snapshot
+ * Import: count (integer)
+ * Export: frozen (FleetStore)
+ * Assertion: a read-only store holding the first count ships as they are now, made
+ *            without copying any ships, ships added to this store afterwards never
+ *            reach it
+ * ************************************************************************/
+
+    public abstract FleetStore snapshot(int count);
+
+
+/***************************************************************************
+ * Submodule: getSpeed
+ * Import: index (integer)
+ * Export: speed (real)
+ * Assertion: calcSpeed of the ship at a valid index, stores that do not keep
+ *            ship objects work it out without building one
+ * ************************************************************************/
+
+    public double getSpeed(int index)
+    {
+        return getShip(index).getSpeed();
+    }
+
+
+/***************************************************************************
+ * Submodule: calcTravel
+ * Import: index (integer), travelDistance (integer)
+ * Export: travelTime (real)
+ * Assertion: calcTravel of the ship at a valid index, which getSpeed alone cannot give
+ *            to the last place, stores that do not keep ship objects work it out
+ *            without building one
+ * ************************************************************************/
+
+    public double calcTravel(int index, int travelDistance)
+    {
+        return getShip(index).calcTravel(travelDistance);
+    }
+
+
+/***************************************************************************
+ * Submodule: getSerialKey
+ * Import: index (integer)
+ * Export: serialKey (integer)
+ * Assertion: Ship.packSerial key of the ship at a valid index, stores that do not
+ *            keep ship objects read it without building one
+ * ************************************************************************/
+
+    public int getSerialKey(int index)
+    {
+        return getShip(index).getSerialKey();
+    }
+}
@@ -0,0 +1,699 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: One version of the fleet of a ShipStorage, its store with the fast
+ *          index and serial index over it. The writer adds ships to the newest
+ *          version in place, but a removal or a compaction makes a new version,
+ *          so a reader that takes a version once sees the fleet of one moment
+ *          without ever waiting for the writer
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.util.*;
+
+public class FleetVersion
+{
+    // class constants, calcTravel does not always round the way distance / speed does, so
+    // speeds closer than SPEEDNOISE may give times in either order and a time worked out
+    // from a speed is only known to within TIMENOISE
+    public static final double SPEEDNOISE = 1e-12;
+    public static final double TIMENOISE = 1e-11;
+    public static final int MAXDEADRUN = FleetStore.CHUNKSIZE; // removed ships a serial lookup may have to walk past
+
+
+    // private class fields, a place is where a ship sits in the store, and a removed ship
+    // keeps its place until a compaction makes a version without it. The writer fills in
+    // entries before placeCount and fastCount make them visible and never changes them
+    // afterwards, so a reader finds every entry below the placeCount it read
+    private FleetStore store;
+    private volatile int placeCount;      // places filled, removed ships included
+    private int removedCount;             // places removed as of this version
+    private int removals;                 // removals made up to this version, later ones are not seen
+    private int deadRun;                  // removed places the last removal left on the front of a serial chain
+    private int[][] removedAt;            // removal each place went in, 0 for none, in chunks like the store
+    private volatile int[] fastIndex;     // stored ships not clearly slower than a stored ship before them
+    private volatile double[] fastSpeed;  // fastest speed up to each of those ships, never decreasing
+    private volatile int fastCount;
+    private volatile int[] serialFirst;   // first place with each serial key, NOSHIP if none, null until a ship is added
+    private int[] serialLast;             // last place with each serial key, only the writer looks at it
+    private volatile int[][] serialNext;  // next place with the same serial key, in chunks like the store
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inStore (FleetStore)
+ * Export: address of new FleetVersion
+ * Assertion: indexes every ship already in inStore, the ones it has marked removed
+ *            count as removed from the start and stay out of the fast index
+ * ************************************************************************/
+
+    public FleetVersion(FleetStore inStore)
+    {
+        if (inStore == null)
+        {
+            throw new IllegalArgumentException("Invalid fleet store");
+        }
+        store = inStore;
+        removedCount = 0;
+        removals = 0;
+        deadRun = 0;
+        removedAt = null;
+        fastIndex = new int[FleetStore.MINCHUNKS];
+        fastSpeed = new double[FleetStore.MINCHUNKS];
+        fastCount = 0;
+        serialFirst = null;
+        serialLast = null;
+        serialNext = new int[FleetStore.MINCHUNKS][];
+
+        for (int ii = 0; ii < inStore.getShipCount(); ii++)
+        {
+            if (inStore.isMarkedRemoved(ii))
+            {
+                stampRemoved(ii, 1);
+                indexSerial(ii, inStore.getSerialKey(ii)); // lookups walk past it like any removed ship
+            }
+            else
+            {
+                indexPlace(ii);
+            }
+        }
+        removals = (removedCount > 0) ? 1 : 0; // all of them went in one removal before this version
+        placeCount = inStore.getShipCount();
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: source (FleetVersion), inStore (FleetStore), count (integer)
+ * Export: address of new FleetVersion
+ * Assertion: the first count places of source, kept in inStore, sharing the index
+ *            entries of source, for a removal to change or a snapshot to keep
+ * ************************************************************************/
+
+    private FleetVersion(FleetVersion source, FleetStore inStore, int count)
+    {
+        store = inStore;
+        removedCount = source.removedCount;
+        removals = source.removals;
+        deadRun = source.deadRun;
+        removedAt = source.removedAt;
+        fastCount = source.fastLimit(count);
+        fastIndex = source.fastIndex;  // read after the count, so it holds every entry below it
+        fastSpeed = source.fastSpeed;
+        serialFirst = source.serialFirst;
+        serialLast = source.serialLast;
+        serialNext = source.serialNext;
+        placeCount = count;
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: ensureCapacity
+ * Import: capacity (integer)
+ * Export: none
+ * Assertion: makes room in the store for at least capacity places
+ * ************************************************************************/
+
+    public void ensureCapacity(int capacity)
+    {
+        store.ensureCapacity(capacity);
+    }
+
+
+/***************************************************************************
+ * Submodule: addShip
+ * Import: ship (Ship)
+ * Export: none
+ * Assertion: stores a copy of the ship in the next place and indexes it, readers see
+ *            it once placeCount counts it
+ * ************************************************************************/
+
+    public void addShip(Ship ship)
+    {
+        store.addShip(ship);
+        indexPlace(placeCount);
+        placeCount = placeCount + 1;
+    }
+
+
+/***************************************************************************
+ * Submodule: adoptShip
+ * Import: ship (Ship)
+ * Export: none
+ * Assertion: the same, keeping the ship itself when the store keeps ship objects
+ * ************************************************************************/
+
+    public void adoptShip(Ship ship)
+    {
+        store.adoptShip(ship);
+        indexPlace(placeCount);
+        placeCount = placeCount + 1;
+    }
+
+
+/***************************************************************************
+ * Submodule: removeSerial
+ * Import: serialKey (integer), below (integer)
+ * Export: next (FleetVersion)
+ * Assertion: a new version in which every ship with the serial key in a place below
+ *            below is removed, or this version when there is none, no ship moves and
+ *            only the fast index entries from a removed ship on are built again
+ * ************************************************************************/
+
+    public FleetVersion removeSerial(int serialKey, int below)
+    {
+        FleetVersion next = this;
+        int dead = 0;
+        int place = TravelResult.NOSHIP;
+
+        if (serialFirst != null)
+        {
+            place = serialFirst[serialKey - Ship.MINSERIALKEY];
+        }
+
+        while ((place != TravelResult.NOSHIP) && (place < below))
+        {
+            if (next == this)
+            {
+                next = new FleetVersion(this, store, placeCount);
+                next.removals = removals + 1;
+            }
+
+            if (!next.isRemoved(place))
+            {
+                next.markRemoved(place);
+            }
+            dead = dead + 1; // removed before or now, a lookup walks past it either way
+            place = serialNext[place >>> FleetStore.CHUNKSHIFT][place & FleetStore.CHUNKMASK];
+        }
+
+        if (next != this)
+        {
+            next.deadRun = dead;
+
+            if (next.removedCount == removedCount)
+            {
+                next = this; // every ship with the key was already gone
+            }
+        }
+        return next;
+    }
+
+
+/***************************************************************************
+ * Submodule: compact
+ * Import: none
+ * Export: compacted (FleetVersion)
+ * Assertion: a new version over a new store without the removed ships, the ones left
+ *            move down and are indexed again, this version and its store are left as
+ *            they were for the readers still on them
+ * ************************************************************************/
+
+    public FleetVersion compact()
+    {
+        int count = placeCount;
+
+        return new FleetVersion(store.compact((place) -> ((place < count) && (!isRemoved(place)))));
+    }
+
+
+// ACCESSORS
+    public FleetStore getStore()
+    {
+        return store;
+    }
+
+
+    public int getPlaceCount()
+    {
+        return placeCount;
+    }
+
+
+    public int getRemovedCount()
+    {
+        return removedCount;
+    }
+
+
+/***************************************************************************
+ * Submodule: getShipCount
+ * Import: none
+ * Export: count (integer)
+ * Assertion: number of places holding a ship that is not removed
+ * ************************************************************************/
+
+    public int getShipCount()
+    {
+        return placeCount - removedCount;
+    }
+
+
+/***************************************************************************
+ * Submodule: isSparse
+ * Import: none
+ * Export: sparse (boolean)
+ * Assertion: removed ships take more than half of at least a chunk of places, or the last
+ *            removal left more than MAXDEADRUN of them for serial lookups to walk past
+ * ************************************************************************/
+
+    public boolean isSparse()
+    {
+        return (((removedCount >= FleetStore.CHUNKSIZE) && (removedCount > placeCount - removedCount))
+                || (deadRun > MAXDEADRUN));
+    }
+
+
+/***************************************************************************
+ * Submodule: isRemoved
+ * Import: place (integer)
+ * Export: gone (boolean)
+ * Assertion: the ship in the place was removed as of this version, removals made in
+ *            later versions leave their stamp here too but are not counted
+ * ************************************************************************/
+
+    public boolean isRemoved(int place)
+    {
+        int[][] stamps = removedAt;
+        int chunk = place >>> FleetStore.CHUNKSHIFT;
+        int stamp = 0;
+
+        if ((stamps != null) && (chunk < stamps.length) && (stamps[chunk] != null))
+        {
+            stamp = stamps[chunk][place & FleetStore.CHUNKMASK];
+        }
+        return ((stamp != 0) && (stamp <= removals));
+    }
+
+
+/***************************************************************************
+ * Submodule: snapshot
+ * Import: none
+ * Export: frozen (FleetVersion)
+ * Assertion: a version of the places filled right now over a read-only snapshot of the
+ *            store, made in constant time, ships the writer adds later never reach it
+ * ************************************************************************/
+
+    public FleetVersion snapshot()
+    {
+        int count = placeCount; // read first, so the store already holds that many
+
+        return new FleetVersion(this, store.snapshot(count), count);
+    }
+
+
+/***************************************************************************
+ * Submodule: firstWithSerial
+ * Import: serialKey (integer), count (integer)
+ * Export: place (integer)
+ * Assertion: first place below count with the serial key whose ship is not removed,
+ *            NOSHIP when there is none
+ * ************************************************************************/
+
+    public int firstWithSerial(int serialKey, int count)
+    {
+        int[] first = serialFirst; // read after count, so every entry below it is in the tables
+        int place = TravelResult.NOSHIP;
+
+        if (first != null)
+        {
+            place = liveFrom(first[serialKey - Ship.MINSERIALKEY], count);
+        }
+        return place;
+    }
+
+
+/***************************************************************************
+ * Submodule: nextWithSerial
+ * Import: place (integer), count (integer)
+ * Export: next (integer)
+ * Assertion: next place below count with the same serial key as place whose ship is
+ *            not removed, NOSHIP when there is none
+ * ************************************************************************/
+
+    public int nextWithSerial(int place, int count)
+    {
+        return liveFrom(serialNext[place >>> FleetStore.CHUNKSHIFT][place & FleetStore.CHUNKMASK], count);
+    }
+
+
+/***************************************************************************
+ * Submodule: findFastest
+ * Import: travelDistance (integer), count (integer)
+ * Export: place (integer)
+ * Assertion: first place below count holding a ship with the lowest travel time, from the
+ *            fast index, only valid for a non-negative distance and a ship below count
+ * ************************************************************************/
+
+    public int findFastest(int travelDistance, int count)
+    {
+        int fast = fastLimit(count);
+        int[] index = fastIndex;
+
+        return index[findFastPosition(store, travelDistance, index, fastSpeed, fast)];
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: indexPlace
+ * Import: place (integer)
+ * Export: none
+ * Assertion: adds the ship the store holds in place to the fast and serial indexes
+ * ************************************************************************/
+
+    private void indexPlace(int place)
+    {
+        indexSpeed(place, store.getSpeed(place));
+        indexSerial(place, store.getSerialKey(place));
+    }
+
+
+/***************************************************************************
+ * Submodule: indexSpeed
+ * Import: place (integer), speed (real)
+ * Export: none
+ * Assertion: records the ship unless a ship stored before it is faster by more than
+ *            SPEEDNOISE, so a ship left out is never quicker than the one that beat it,
+ *            the entry is filled in before fastCount makes it visible
+ * ************************************************************************/
+
+    private void indexSpeed(int place, double speed)
+    {
+        double fastest = speed;
+
+        if (fastCount > 0)
+        {
+            fastest = Math.max(speed, fastSpeed[fastCount - 1]);
+        }
+
+        if ((fastCount == 0) || (speed * (1.0 + SPEEDNOISE) > fastSpeed[fastCount - 1]))
+        {
+            if (fastCount == fastIndex.length)
+            {
+                // readers still on the old arrays find the same entries in them
+                fastIndex = Arrays.copyOf(fastIndex, fastCount * 2);
+                fastSpeed = Arrays.copyOf(fastSpeed, fastCount * 2);
+            }
+            fastIndex[fastCount] = place;
+            fastSpeed[fastCount] = fastest;
+            fastCount = fastCount + 1;
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: unindexSpeed
+ * Import: place (integer)
+ * Export: none
+ * Assertion: takes a removed place out of the fast index, in new arrays as older versions
+ *            share the old ones, the ships after it are looked at again up to the first
+ *            entry at least as quick as the removed ship, from which on the entries and
+ *            their fastest speeds are the same as before
+ * ************************************************************************/
+
+    private void unindexSpeed(int place)
+    {
+        int position = Arrays.binarySearch(fastIndex, 0, fastCount, place);
+        int[] index;
+        double[] speed;
+        int count;
+        int next;
+        int ii;
+        double removedSpeed;
+        double shipSpeed;
+        boolean joined = false;
+
+        if (position >= 0)
+        {
+            removedSpeed = store.getSpeed(place);
+            index = Arrays.copyOf(fastIndex, fastIndex.length);
+            speed = Arrays.copyOf(fastSpeed, fastSpeed.length);
+            count = position;
+            next = position + 1;
+            ii = place + 1;
+
+            while ((!joined) && (ii < placeCount))
+            {
+                if ((next < fastCount) && (fastIndex[next] == ii))
+                {
+                    // every old entry stays in, one as quick as the removed ship rejoins the old index
+                    shipSpeed = store.getSpeed(ii);
+                    joined = (shipSpeed >= removedSpeed);
+                    next = next + 1;
+                }
+                else if (!isRemoved(ii))
+                {
+                    shipSpeed = store.getSpeed(ii);
+
+                    if ((count > 0) && (shipSpeed * (1.0 + SPEEDNOISE) <= speed[count - 1]))
+                    {
+                        shipSpeed = Double.NaN; // still clearly slower than a ship before it
+                    }
+                }
+                else
+                {
+                    shipSpeed = Double.NaN;
+                }
+
+                if (!Double.isNaN(shipSpeed))
+                {
+                    if (count == index.length)
+                    {
+                        index = Arrays.copyOf(index, count * 2);
+                        speed = Arrays.copyOf(speed, count * 2);
+                    }
+                    index[count] = ii;
+                    speed[count] = (count > 0) ? Math.max(shipSpeed, speed[count - 1]) : shipSpeed;
+                    count = count + 1;
+                }
+                ii = ii + 1;
+            }
+
+            if (joined)
+            {
+                if (count + (fastCount - next) > index.length)
+                {
+                    index = Arrays.copyOf(index, count + (fastCount - next));
+                    speed = Arrays.copyOf(speed, index.length);
+                }
+                System.arraycopy(fastIndex, next, index, count, fastCount - next);
+                System.arraycopy(fastSpeed, next, speed, count, fastCount - next);
+                count = count + (fastCount - next);
+            }
+            fastIndex = index;
+            fastSpeed = speed;
+            fastCount = count;
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: markRemoved
+ * Import: place (integer)
+ * Export: none
+ * Assertion: stamps the place with this version's removal, marks it removed in the
+ *            store, and takes it out of the fast index
+ * ************************************************************************/
+
+    private void markRemoved(int place)
+    {
+        stampRemoved(place, removals);
+        store.markRemoved(place);
+        unindexSpeed(place);
+    }
+
+
+/***************************************************************************
+ * Submodule: stampRemoved
+ * Import: place (integer), stamp (integer)
+ * Export: none
+ * Assertion: stamps the place with the removal it went in and counts it, a chunk or
+ *            directory older versions do not have yet is simply added
+ * ************************************************************************/
+
+    private void stampRemoved(int place, int stamp)
+    {
+        int chunk = place >>> FleetStore.CHUNKSHIFT;
+
+        if (removedAt == null)
+        {
+            removedAt = new int[Math.max(chunk + 1, FleetStore.MINCHUNKS)][];
+        }
+        else if (chunk >= removedAt.length)
+        {
+            removedAt = Arrays.copyOf(removedAt, Math.max(chunk + 1, removedAt.length * 2));
+        }
+
+        if (removedAt[chunk] == null)
+        {
+            removedAt[chunk] = new int[FleetStore.CHUNKSIZE];
+        }
+        removedAt[chunk][place & FleetStore.CHUNKMASK] = stamp;
+        removedCount = removedCount + 1;
+    }
+
+
+/***************************************************************************
+ * Submodule: indexSerial
+ * Import: place (integer), serialKey (integer)
+ * Export: none
+ * Assertion: links the place onto the end of the places with its serial key, the key is
+ *            the position in a table covering every valid key, so no hashing is needed
+ * ************************************************************************/
+
+    private void indexSerial(int place, int serialKey)
+    {
+        int key = serialKey - Ship.MINSERIALKEY;
+        int chunk = place >>> FleetStore.CHUNKSHIFT;
+        int[][] next = serialNext;
+
+        if (serialFirst == null)
+        {
+            // about 800 kilobytes each, so left until the first ship needs them
+            serialLast = new int[Ship.MAXSERIALKEY - Ship.MINSERIALKEY + 1];
+            Arrays.fill(serialLast, TravelResult.NOSHIP);
+            serialFirst = serialLast.clone();
+        }
+
+        if (chunk >= next.length)
+        {
+            // readers still on the old directory find the same chunks in it
+            next = Arrays.copyOf(next, Math.max(chunk + 1, next.length * 2));
+        }
+
+        if (next[chunk] == null)
+        {
+            next[chunk] = new int[FleetStore.CHUNKSIZE];
+        }
+        serialNext = next;
+        next[chunk][place & FleetStore.CHUNKMASK] = TravelResult.NOSHIP;
+
+        if (serialLast[key] == TravelResult.NOSHIP)
+        {
+            serialFirst[key] = place;
+        }
+        else
+        {
+            next[serialLast[key] >>> FleetStore.CHUNKSHIFT][serialLast[key] & FleetStore.CHUNKMASK] = place;
+        }
+        serialLast[key] = place;
+    }
+
+
+/***************************************************************************
+ * Submodule: liveFrom
+ * Import: place (integer), count (integer)
+ * Export: place (integer)
+ * Assertion: the first place from place along its serial chain that is below count and
+ *            not removed, NOSHIP if there is none
+ * ************************************************************************/
+
+    private int liveFrom(int place, int count)
+    {
+        int[][] next = serialNext;
+
+        // the chain only ever goes up, so the first place at or past count ends it
+        while ((place >= 0) && (place < count) && (isRemoved(place)))
+        {
+            place = next[place >>> FleetStore.CHUNKSHIFT][place & FleetStore.CHUNKMASK];
+        }
+
+        if (place >= count)
+        {
+            place = TravelResult.NOSHIP;
+        }
+        return place;
+    }
+
+
+/***************************************************************************
+ * Submodule: fastLimit
+ * Import: count (integer)
+ * Export: limit (integer)
+ * Assertion: number of fast index entries that belong to the first count places, so a
+ *            reader sees the index as it was when count places were filled
+ * ************************************************************************/
+
+    private int fastLimit(int count)
+    {
+        int limit = fastCount; // read after count, so it can only be ahead of it
+        int[] index = fastIndex;
+
+        while ((limit > 0) && (index[limit - 1] >= count))
+        {
+            limit = limit - 1;
+        }
+        return limit;
+    }
+
+
+/***************************************************************************
+ * Submodule: findFastPosition
+ * Import: fleet (FleetStore), travelDistance (integer), index (ARRAY OF integer),
+ *         speed (ARRAY OF real), fast (integer)
+ * Export: position (integer)
+ * Assertion: position among the first fast entries of the fast index of the first ship
+ *            with the lowest travel time, only valid for a non-negative distance and fast > 0
+ * ************************************************************************/
+
+    private static int findFastPosition(FleetStore fleet, int travelDistance, int[] index, double[] speed,
+                                        int fast)
+    {
+        // Every ship that is not in the fast index is preceded by one that is at least as quick,
+        // so the first ship tied on the best time is the first indexed ship reaching that time.
+        // The times worked out from the fastest speed so far never increase along the index and
+        // are within TIMENOISE of the real ones, which makes that a binary search, and only the
+        // few entries whose time sits on a rounding edge need their real time checked.
+        double lowest = Ship.calcTravel(travelDistance, speed[fast - 1], 1.0 - TIMENOISE);
+        double bestTime = fleet.calcTravel(index[fast - 1], travelDistance);
+        int position;
+
+        if (bestTime > lowest)
+        {
+            // the last entry is on an edge, so an entry just before it may round down instead
+            for (int ii = firstWithin(travelDistance, speed, fast, lowest); ii < fast - 1; ii++)
+            {
+                bestTime = Math.min(bestTime, fleet.calcTravel(index[ii], travelDistance));
+            }
+        }
+
+        position = firstWithin(travelDistance, speed, fast, bestTime);
+
+        while (fleet.calcTravel(index[position], travelDistance) != bestTime)
+        {
+            position = position + 1;
+        }
+        return position;
+    }
+
+
+/***************************************************************************
+ * Submodule: firstWithin
+ * Import: travelDistance (integer), speed (ARRAY OF real), fast (integer), time (real)
+ * Export: low (integer)
+ * Assertion: first of the first fast entries whose real time could be time or less,
+ *            fast when there is none
+ * ************************************************************************/
+
+    private static int firstWithin(int travelDistance, double[] speed, int fast, double time)
+    {
+        int low = 0;
+        int high = fast;
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (Ship.calcTravel(travelDistance, speed[mid], 1.0 - TIMENOISE) <= time)
+            {
+                high = mid;
+            }
+            else
+            {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,177 @@
+/***********************************************************************
+ *  Author: Benjamin Le
+ *  Purpose: Counts the ships loaded from a file and keeps the first few
+ *           rejected lines instead of printing every one
+ *  Date last modified: 27 May 2019
+ * *********************************************************************/
+
+import java.util.*;
+
+public class LoadReport
+{
+    // class constants
+    public static final int MAXERRORS = 100;
+
+
+    // private class fields
+    private long rowsLoaded;
+    private long rowsRejected;
+    private List<Long> errorLines;
+    private List<String> errorMessages;
+    private long elapsedNanos;
+
+
+/***********************************************************************
+ *  Default Constructor
+ *  Import: none
+ *  Export: none
+ *  Assertion: creates an empty report
+ *  *********************************************************************/
+
+    public LoadReport()
+    {
+        rowsLoaded = 0;
+        rowsRejected = 0;
+        errorLines = new ArrayList<Long>();
+        errorMessages = new ArrayList<String>();
+        elapsedNanos = 0;
+    }
+
+
+// MUTATORS
+/***********************************************************************
+ *  Submodule: addLoaded
+ *  Import: none
+ *  Export: none
+ *  Assertion: counts one more ship loaded
+ *  *********************************************************************/
+
+    public void addLoaded()
+    {
+        rowsLoaded = rowsLoaded + 1;
+    }
+
+
+/***********************************************************************
+ *  Submodule: addError
+ *  Import: lineNum (long), message (String)
+ *  Export: none
+ *  Assertion: counts one more rejected line, only the first MAXERRORS are kept
+ *  *********************************************************************/
+
+    public void addError(long lineNum, String message)
+    {
+        rowsRejected = rowsRejected + 1;
+
+        if (errorLines.size() < MAXERRORS)
+        {
+            errorLines.add(lineNum);
+            errorMessages.add(message);
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: addReport
+ *  Import: part (LoadReport), lineOffset (long)
+ *  Export: none
+ *  Assertion: adds the counts and errors of a report for a later part of the same
+ *             file, whose line numbers start lineOffset lines into the file
+ *  *********************************************************************/
+
+    public void addReport(LoadReport part, long lineOffset)
+    {
+        rowsLoaded = rowsLoaded + part.getRowsLoaded();
+
+        for (int ii = 0; ii < part.errorLines.size(); ii++)
+        {
+            addError(lineOffset + part.errorLines.get(ii), part.errorMessages.get(ii));
+        }
+
+        // errors past MAXERRORS in the part were only counted
+        rowsRejected = rowsRejected + (part.getRowsRejected() - part.errorLines.size());
+    }
+
+
+    public void setElapsedNanos(long inElapsedNanos)
+    {
+        elapsedNanos = inElapsedNanos;
+    }
+
+
+// ACCESSORS
+    public long getRowsLoaded()
+    {
+        return rowsLoaded;
+    }
+
+
+    public long getRowsRejected()
+    {
+        return rowsRejected;
+    }
+
+
+    public List<String> getErrors()
+    {
+        List<String> errors = new ArrayList<String>();
+
+        for (int ii = 0; ii < errorLines.size(); ii++)
+        {
+            errors.add("Line " + errorLines.get(ii) + ": Invalid " + errorMessages.get(ii));
+        }
+        return errors;
+    }
+
+
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+
+/***********************************************************************
+ *  Submodule: getRowsPerSecond
+ *  Import: none
+ *  Export: rate (real)
+ *  Assertion: lines read per second, loaded and rejected together
+ *  *********************************************************************/
+
+    public double getRowsPerSecond()
+    {
+        double rate = 0.0;
+
+        if (elapsedNanos > 0)
+        {
+            rate = (rowsLoaded + rowsRejected) / (elapsedNanos / 1.0e9);
+        }
+        return rate;
+    }
+
+
+/***********************************************************************
+ *  Submodule: toString
+ *  Import: none
+ *  Export: str (String)
+ *  *********************************************************************/
+
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+
+        for (String error : getErrors())
+        {
+            str.append(error).append('\n');
+        }
+
+        if (rowsRejected > errorLines.size())
+        {
+            str.append("... ").append(rowsRejected - errorLines.size()).append(" more invalid lines\n");
+        }
+
+        str.append("Loaded ").append(rowsLoaded).append(" ships, rejected ").append(rowsRejected)
+           .append(" lines in ").append(elapsedNanos / 1000000).append(" ms (")
+           .append(Math.round(getRowsPerSecond())).append(" rows/sec)");
+        return str.toString();
+    }
+}
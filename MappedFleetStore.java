@@ -0,0 +1,707 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Keeps the fleet as fixed width records in a memory mapped file, off
+ *          the Java heap, so the fleet is still there when the program is
+ *          started again with the same file
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+public class MappedFleetStore extends FleetStore
+{
+    // class constants
+    public static final int STOREMAGIC = 0x53484946; // "SHIF"
+    public static final short STOREVERSION = 1;
+    public static final int HEADERBYTES = 16;        // magic, version, spare short, ship count, spare int
+    public static final int COUNTOFFSET = 8;
+    public static final int RECORDBYTES = FileManager.RECORDBYTES; // same record layout as a snapshot
+    public static final int SEGMENTSHIFT = 20;       // records per mapped segment is 2^20, about 21 MB
+    public static final int SEGMENTRECORDS = 1 << SEGMENTSHIFT;
+    public static final String ORDNANCESUFFIX = ".ord";
+    public static final String TEMPSUFFIX = ".tmp";  // compact writes the new file here first
+    public static final int REMOVEDFLAG = 0x20;      // set in the type of a removed record, 'S' reads 's'
+
+
+    // private class fields, segments and ordnances are volatile so a reader never sees a
+    // grown copy before its entries are in it
+    private Path path;
+    private FileChannel channel;
+    private FileChannel ordnanceChannel;
+    private MappedByteBuffer header;
+    private volatile MappedByteBuffer[] segments;
+    private int shipCount;
+    private volatile String[] ordnances;
+    private int ordnanceCount;
+    private Map<String, Integer> ordnanceCodes;
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: fileName (String)
+ * Export: address of new MappedFleetStore
+ * Assertion: opens the store kept in fileName (and its ordnance file), creating an
+ *            empty one when the file does not exist yet
+ * ************************************************************************/
+
+    public MappedFleetStore(String fileName) throws IOException
+    {
+        boolean existing;
+
+        path = Paths.get(fileName);
+        existing = (Files.exists(path) && (Files.size(path) > 0));
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                   StandardOpenOption.CREATE);
+        try
+        {
+            ordnanceChannel = FileChannel.open(Paths.get(fileName + ORDNANCESUFFIX), StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADERBYTES);
+            segments = new MappedByteBuffer[MINCHUNKS];
+            ordnances = new String[MINCHUNKS];
+            ordnanceCount = 0;
+            ordnanceCodes = new HashMap<String, Integer>();
+
+            if (existing)
+            {
+                openExisting(fileName);
+            }
+            else
+            {
+                header.putInt(0, STOREMAGIC);
+                header.putShort(4, STOREVERSION);
+                header.putInt(COUNTOFFSET, 0);
+                shipCount = 0;
+            }
+        }
+        catch (IOException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inSource (MappedFleetStore), count (integer)
+ * Export: address of new MappedFleetStore
+ * Assertion: creates a read-only store sharing the mapped segments of inSource, it
+ *            owns no files
+ * ************************************************************************/
+
+    private MappedFleetStore(MappedFleetStore inSource, int count)
+    {
+        segments = inSource.segments;
+        ordnances = inSource.ordnances;
+        ordnanceCount = inSource.ordnanceCount;
+        shipCount = count;
+        markReadOnly();
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: old (MappedFleetStore), tempPath (Path)
+ * Export: address of new MappedFleetStore
+ * Assertion: creates an empty store in tempPath that carries on with the ordnance file
+ *            and dictionary of old, for compact to fill
+ * ************************************************************************/
+
+    private MappedFleetStore(MappedFleetStore old, Path tempPath) throws IOException
+    {
+        path = tempPath;
+        channel = FileChannel.open(tempPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                   StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        ordnanceChannel = old.ordnanceChannel;
+        ordnances = old.ordnances;
+        ordnanceCount = old.ordnanceCount;
+        ordnanceCodes = old.ordnanceCodes;
+        segments = new MappedByteBuffer[MINCHUNKS];
+        shipCount = 0;
+
+        try
+        {
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADERBYTES);
+            header.putInt(0, STOREMAGIC);
+            header.putShort(4, STOREVERSION);
+            header.putInt(COUNTOFFSET, 0);
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: ensureCapacity
+ * Import: capacity (integer)
+ * Export: none
+ * Assertion: maps segments until at least capacity records fit, which grows the
+ *            file, records already in the file never move
+ * ************************************************************************/
+
+    public void ensureCapacity(int capacity)
+    {
+        int segmentsNeeded = (int)(((long)capacity + SEGMENTRECORDS - 1) >>> SEGMENTSHIFT);
+
+        checkWritable();
+
+        if (segmentsNeeded > segments.length)
+        {
+            segments = Arrays.copyOf(segments, Math.max(segmentsNeeded, segments.length * 2));
+        }
+
+        try
+        {
+            for (int ii = 0; ii < segmentsNeeded; ii++)
+            {
+                if (segments[ii] == null)
+                {
+                    segments[ii] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                               HEADERBYTES + ((long)ii * SEGMENTRECORDS * RECORDBYTES),
+                                               (long)SEGMENTRECORDS * RECORDBYTES);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: addShip
+ * Import: ship (Ship)
+ * Export: none
+ * Assertion: writes the ship as the next record, then counts it in the header, so a
+ *            program that dies part way leaves no half written record counted, the
+ *            pages only reach the disk in order on force or close, after a power loss
+ *            the count may reach it before the record does
+ * ************************************************************************/
+
+    public void addShip(Ship ship)
+    {
+        int serialKey = ship.getSerialKey();
+        ByteBuffer segment;
+        int offset = (shipCount & (SEGMENTRECORDS - 1)) * RECORDBYTES;
+
+        checkWritable();
+        ensureCapacity(shipCount + 1);
+        segment = segments[shipCount >>> SEGMENTSHIFT];
+
+        segment.putShort(offset + 1, (short)(serialKey / 1000));
+        segment.putShort(offset + 3, (short)(serialKey % 1000));
+        segment.putShort(offset + 5, (short)ship.getYear());
+        segment.put(offset + 7, (byte)ship.getEngine().getCylinders());
+        segment.put(offset + 8, (byte)Engine.fuelCode(ship.getEngine().getFuel()));
+
+        if (ship instanceof Submarine)
+        {
+            segment.put(offset, (byte)'S');
+            segment.putInt(offset + 9, Submarine.hullCode(((Submarine)ship).getHull()));
+            segment.putDouble(offset + 13, ((Submarine)ship).getMaxDepth());
+        }
+        else
+        {
+            segment.put(offset, (byte)'F');
+            segment.putInt(offset + 9, ordnanceCode(((FighterJet)ship).getOrdnance()));
+            segment.putDouble(offset + 13, ((FighterJet)ship).getWingSpan());
+        }
+
+        shipCount = shipCount + 1;
+        header.putInt(COUNTOFFSET, shipCount);
+    }
+
+
+/***************************************************************************
+ * Submodule: markRemoved
+ * Import: index (integer)
+ * Export: none
+ * Assertion: flags the record at a valid index as removed in its type, a single byte
+ *            written in place, so the removal is in the file without waiting for a
+ *            compaction, readers still build the ship from the record as before
+ * ************************************************************************/
+
+    public void markRemoved(int index)
+    {
+        ByteBuffer segment;
+        int offset = (index & (SEGMENTRECORDS - 1)) * RECORDBYTES;
+
+        checkWritable();
+        segment = segments[index >>> SEGMENTSHIFT];
+        segment.put(offset, (byte)(segment.get(offset) | REMOVEDFLAG));
+    }
+
+
+/***************************************************************************
+ * Submodule: compact
+ * Import: keep (IntPredicate)
+ * Export: compacted (FleetStore)
+ * Assertion: copies the records that pass keep into a new file, which then takes the
+ *            place of this one in a single rename, so a crash leaves one or the other
+ *            whole, this store keeps its mapping of the old records for the readers
+ *            and snapshots still on it, and hands its ordnance file to the new store
+ * ************************************************************************/
+
+    public FleetStore compact(IntPredicate keep)
+    {
+        Path tempPath = Paths.get(path + TEMPSUFFIX);
+        MappedFleetStore compacted = null;
+        byte[] record = new byte[RECORDBYTES];
+        int kept;
+
+        checkWritable();
+
+        try
+        {
+            compacted = new MappedFleetStore(this, tempPath);
+
+            for (int ii = 0; ii < shipCount; ii++)
+            {
+                if (keep.test(ii))
+                {
+                    kept = compacted.shipCount;
+                    compacted.ensureCapacity(kept + 1);
+                    segments[ii >>> SEGMENTSHIFT].get((ii & (SEGMENTRECORDS - 1)) * RECORDBYTES, record);
+                    compacted.segments[kept >>> SEGMENTSHIFT].put((kept & (SEGMENTRECORDS - 1)) * RECORDBYTES,
+                                                                  record);
+                    compacted.shipCount = kept + 1;
+                }
+            }
+            compacted.header.putInt(COUNTOFFSET, compacted.shipCount);
+            compacted.force();
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            discard(compacted, tempPath);
+            throw new UncheckedIOException(e);
+        }
+        compacted.path = path;
+        markReadOnly();
+        ordnanceChannel = null;
+        header = null;
+
+        try
+        {
+            channel.close(); // the mapped segments stay readable without it
+        }
+        catch (IOException e)
+        {
+            // the new file is already in place, the old one was only being let go
+        }
+        return compacted;
+    }
+
+
+/***************************************************************************
+ * Submodule: force
+ * Import: none
+ * Export: none
+ * Assertion: writes every change so far to the disk
+ * ************************************************************************/
+
+    public void force() throws IOException
+    {
+        checkWritable();
+
+        for (int ii = 0; ii < segments.length; ii++)
+        {
+            if (segments[ii] != null)
+            {
+                segments[ii].force();
+            }
+        }
+        header.force();
+        ordnanceChannel.force(true);
+    }
+
+
+/***************************************************************************
+ * Submodule: close
+ * Import: none
+ * Export: none
+ * Assertion: writes every change to the disk and closes the files, the store
+ *            cannot be used afterwards
+ * ************************************************************************/
+
+    public void close() throws IOException
+    {
+        try
+        {
+            if ((header != null) && (ordnanceChannel != null))
+            {
+                force();
+            }
+        }
+        finally
+        {
+            segments = null;
+            header = null;
+
+            if (ordnanceChannel != null)
+            {
+                ordnanceChannel.close();
+            }
+            if (channel != null)
+            {
+                channel.close();
+            }
+        }
+    }
+
+
+// ACCESSORS
+/***************************************************************************
+ * Submodule: getShip
+ * Import: index (integer)
+ * Export: ship (Ship)
+ * Assertion: a new ship built from the record at a valid index, changing it does
+ *            not change the store
+ * ************************************************************************/
+
+    public Ship getShip(int index)
+    {
+        Ship ship;
+        ByteBuffer segment = segments[index >>> SEGMENTSHIFT];
+        int offset = (index & (SEGMENTRECORDS - 1)) * RECORDBYTES;
+        String serialNum = Ship.unpackSerial((segment.getShort(offset + 1) * 1000) + segment.getShort(offset + 3));
+        Engine engine = Engine.of(segment.get(offset + 7), Engine.fuelName(segment.get(offset + 8)));
+
+        if (isSubmarine(segment.get(offset)))
+        {
+            ship = new Submarine(serialNum, segment.getShort(offset + 5), Submarine.hullName(segment.getInt(offset + 9)),
+                                 segment.getDouble(offset + 13), engine);
+        }
+        else
+        {
+            ship = new FighterJet(serialNum, segment.getShort(offset + 5), segment.getDouble(offset + 13),
+                                  ordnances[segment.getInt(offset + 9)], engine);
+        }
+        return ship;
+    }
+
+
+    public Ship copyShip(int index)
+    {
+        return getShip(index); // getShip already builds a new ship
+    }
+
+
+    public int getShipCount()
+    {
+        return shipCount;
+    }
+
+
+/***************************************************************************
+ * Submodule: getSpeed
+ * Import: index (integer)
+ * Export: speed (real)
+ * Assertion: calcSpeed of the ship at a valid index, read straight from the mapped record
+ * ************************************************************************/
+
+    public double getSpeed(int index)
+    {
+        double speed;
+        ByteBuffer segment = segments[index >>> SEGMENTSHIFT];
+        int offset = (index & (SEGMENTRECORDS - 1)) * RECORDBYTES;
+
+        if (isSubmarine(segment.get(offset)))
+        {
+            speed = Submarine.calcSpeed(segment.get(offset + 7), segment.getDouble(offset + 13));
+        }
+        else
+        {
+            speed = FighterJet.calcSpeed(segment.getDouble(offset + 13), segment.get(offset + 7));
+        }
+        return speed;
+    }
+
+
+/***************************************************************************
+ * Submodule: calcTravel
+ * Import: index (integer), travelDistance (integer)
+ * Export: travelTime (real)
+ * Assertion: calcTravel of the ship at a valid index, read straight from the mapped record
+ * ************************************************************************/
+
+    public double calcTravel(int index, int travelDistance)
+    {
+        double time;
+        ByteBuffer segment = segments[index >>> SEGMENTSHIFT];
+        int offset = (index & (SEGMENTRECORDS - 1)) * RECORDBYTES;
+
+        if (isSubmarine(segment.get(offset)))
+        {
+            time = Submarine.calcTravel(travelDistance, segment.get(offset + 7),
+                                        segment.getDouble(offset + 13));
+        }
+        else
+        {
+            time = Ship.calcTravel(travelDistance,
+                                   FighterJet.calcSpeed(segment.getDouble(offset + 13), segment.get(offset + 7)));
+        }
+        return time;
+    }
+
+
+    public boolean isMarkedRemoved(int index)
+    {
+        return ((segments[index >>> SEGMENTSHIFT].get((index & (SEGMENTRECORDS - 1)) * RECORDBYTES)
+                 & REMOVEDFLAG) != 0);
+    }
+
+
+    public int getSerialKey(int index)
+    {
+        ByteBuffer segment = segments[index >>> SEGMENTSHIFT];
+        int offset = (index & (SEGMENTRECORDS - 1)) * RECORDBYTES;
+
+        return (segment.getShort(offset + 1) * 1000) + segment.getShort(offset + 3);
+    }
+
+
+/***************************************************************************
+ * Submodule: snapshot
+ * Import: count (integer)
+ * Export: frozen (FleetStore)
+ * Assertion: a read-only store sharing the mapped segments, records are only ever
+ *            written past the ones already counted, but for the removed flag, which
+ *            the readers of a record look past
+ * ************************************************************************/
+
+    public FleetStore snapshot(int count)
+    {
+        if ((count < 0) || (count > shipCount))
+        {
+            throw new IllegalArgumentException("Invalid snapshot count");
+        }
+        return new MappedFleetStore(this, count);
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: openExisting
+ * Import: fileName (String)
+ * Export: none
+ * Assertion: checks the header of a store written before, reads back its ordnance
+ *            dictionary and maps its records, a length that runs past the ordnance file
+ *            or a record that is not a ship is refused before the store is used
+ * ************************************************************************/
+
+    private void openExisting(String fileName) throws IOException
+    {
+        ByteBuffer lengthBuf = ByteBuffer.allocate(4);
+        ByteBuffer textBuf;
+        long position = 0;
+        int count;
+        int textLength;
+
+        if ((header.getInt(0) != STOREMAGIC) || (header.getShort(4) != STOREVERSION))
+        {
+            throw new IOException(fileName + " is not a fleet store");
+        }
+        count = header.getInt(COUNTOFFSET);
+
+        if ((count < 0) || (HEADERBYTES + ((long)count * RECORDBYTES) > channel.size()))
+        {
+            throw new IOException("Corrupt ship count in " + fileName);
+        }
+
+        // each ordnance is its length in bytes followed by its UTF-8 bytes
+        while (position < ordnanceChannel.size())
+        {
+            lengthBuf.clear();
+            readFully(lengthBuf, position);
+            textLength = lengthBuf.getInt(0);
+
+            if ((textLength < 0) || (textLength > ordnanceChannel.size() - position - 4))
+            {
+                throw new IOException("Corrupt ordnance file for " + fileName);
+            }
+            textBuf = ByteBuffer.allocate(textLength);
+            readFully(textBuf, position + 4);
+            rememberOrdnance(new String(textBuf.array(), StandardCharsets.UTF_8));
+            position = position + 4 + textBuf.capacity();
+        }
+
+        ensureCapacity(count);
+
+        for (int ii = 0; ii < count; ii++)
+        {
+            if (!isShipRecord(segments[ii >>> SEGMENTSHIFT], (ii & (SEGMENTRECORDS - 1)) * RECORDBYTES))
+            {
+                throw new IOException("Corrupt ship record " + (ii + 1) + " in " + fileName);
+            }
+        }
+        shipCount = count;
+    }
+
+
+/***************************************************************************
+ * Submodule: isShipRecord
+ * Import: segment (ByteBuffer), offset (integer)
+ * Export: valid (boolean)
+ * Assertion: the record at offset has a ship type, a serial number packSerial would give,
+ *            an engine and a hull or ordnance code that exist, so reading and indexing it
+ *            cannot fail, checked without building a ship
+ * ************************************************************************/
+
+    private boolean isShipRecord(ByteBuffer segment, int offset)
+    {
+        byte type = (byte)(segment.get(offset) & ~REMOVEDFLAG); // a removed record is checked all the same
+        int XXX = segment.getShort(offset + 1);
+        int YYY = segment.getShort(offset + 3);
+        int code = segment.getInt(offset + 9);
+        boolean valid = ((type == 'S') || ((type == 'F') && (code >= 0) && (code < ordnanceCount)))
+                        && (XXX >= 100) && (XXX <= 300) && (YYY >= 1) && (YYY <= 999);
+
+        try
+        {
+            Engine.of(segment.get(offset + 7), Engine.fuelName(segment.get(offset + 8)));
+
+            if (type == 'S')
+            {
+                Submarine.hullName(code);
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            valid = false;
+        }
+        return valid;
+    }
+
+
+/***************************************************************************
+ * Submodule: isSubmarine
+ * Import: type (byte)
+ * Export: submarine (boolean)
+ * Assertion: the type of a record, removed or not, is that of a submarine
+ * ************************************************************************/
+
+    private static boolean isSubmarine(byte type)
+    {
+        return ((type & ~REMOVEDFLAG) == 'S');
+    }
+
+
+/***************************************************************************
+ * Submodule: discard
+ * Import: compacted (MappedFleetStore), tempPath (Path)
+ * Export: none
+ * Assertion: closes and deletes the new file of a compaction that failed, the ordnance
+ *            file stays open, it still belongs to this store
+ * ************************************************************************/
+
+    private static void discard(MappedFleetStore compacted, Path tempPath)
+    {
+        try
+        {
+            if (compacted != null)
+            {
+                compacted.ordnanceChannel = null;
+                compacted.close();
+            }
+            Files.deleteIfExists(tempPath);
+        }
+        catch (IOException e)
+        {
+            // the compaction failure is the one worth reporting
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: readFully
+ * Import: buf (ByteBuffer), position (long)
+ * Export: none
+ * Assertion: fills buf from the ordnance file starting at position
+ * ************************************************************************/
+
+    private void readFully(ByteBuffer buf, long position) throws IOException
+    {
+        while (buf.hasRemaining())
+        {
+            if (ordnanceChannel.read(buf, position + buf.position()) < 0)
+            {
+                throw new IOException("Ordnance file ends part way through");
+            }
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: ordnanceCode
+ * Import: ordnance (String)
+ * Export: code (integer)
+ * Assertion: position of the ordnance in the dictionary, appended to the ordnance
+ *            file the first time it is seen
+ * ************************************************************************/
+
+    private int ordnanceCode(String ordnance)
+    {
+        Integer code = ordnanceCodes.get(ordnance);
+        byte[] text;
+        ByteBuffer entry;
+
+        if (code == null)
+        {
+            text = ordnance.getBytes(StandardCharsets.UTF_8);
+            entry = ByteBuffer.allocate(4 + text.length);
+            entry.putInt(text.length).put(text).flip();
+
+            try
+            {
+                while (entry.hasRemaining())
+                {
+                    ordnanceChannel.write(entry, ordnanceChannel.size());
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+
+            code = rememberOrdnance(ordnance);
+        }
+        return code;
+    }
+
+
+/***************************************************************************
+ * Submodule: rememberOrdnance
+ * Import: ordnance (String)
+ * Export: code (integer)
+ * Assertion: adds the ordnance to the end of the dictionary and returns its position
+ * ************************************************************************/
+
+    private int rememberOrdnance(String ordnance)
+    {
+        String[] table = ordnances;
+        int code = ordnanceCount;
+
+        if (code == table.length)
+        {
+            table = Arrays.copyOf(table, code * 2);
+        }
+        table[code] = ordnance;
+        ordnances = table; // published before any record uses the code
+        ordnanceCount = code + 1;
+        ordnanceCodes.put(ordnance, code);
+        return code;
+    }
+}
@@ -0,0 +1,186 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Keeps each ship as its own object in fixed size chunks, so the
+ *          store grows without copying the ships already in it
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.util.*;
+import java.util.function.*;
+
+public class ObjectFleetStore extends FleetStore
+{
+    // private class fields, the directory is volatile so a reader never sees a grown copy
+    // before its chunks are in it
+    private volatile Ship[][] shipChunks;
+    private int shipCount;
+
+
+/***************************************************************************
+ * Default Constructor
+ * Import: none
+ * Export: none
+ * Assertion: creates an empty store with room for one chunk of ships
+ * ************************************************************************/
+
+    public ObjectFleetStore()
+    {
+        this(CHUNKSIZE);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: capacityHint (integer)
+ * Export: address of new ObjectFleetStore
+ * Assertion: creates an empty store pre-sized to hold capacityHint ships, fails if negative
+ * ************************************************************************/
+
+    public ObjectFleetStore(int capacityHint)
+    {
+        if (capacityHint < 0)
+        {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        shipChunks = new Ship[MINCHUNKS][];
+        shipCount = 0;
+        ensureCapacity(capacityHint);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inShipChunks (ARRAY OF ARRAYS OF Ship), inShipCount (integer)
+ * Export: address of new ObjectFleetStore
+ * Assertion: creates a read-only store sharing the chunks of another store
+ * ************************************************************************/
+
+    private ObjectFleetStore(Ship[][] inShipChunks, int inShipCount)
+    {
+        shipChunks = inShipChunks;
+        shipCount = inShipCount;
+        markReadOnly();
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: ensureCapacity
+ * Import: capacity (integer)
+ * Export: none
+ * Assertion: allocates chunks until at least capacity ships fit, existing ships are never copied
+ * ************************************************************************/
+
+    public void ensureCapacity(int capacity)
+    {
+        int chunksNeeded = (int)(((long)capacity + CHUNKMASK) >>> CHUNKSHIFT);
+
+        checkWritable();
+
+        if (chunksNeeded > shipChunks.length)
+        {
+            // only the chunk directory is copied, the chunks themselves stay where they are
+            int newLength = Math.max(chunksNeeded, shipChunks.length * 2);
+            shipChunks = Arrays.copyOf(shipChunks, newLength);
+        }
+
+        // chunks are always allocated from the front, so stop at the first one already present
+        for (int ii = chunksNeeded - 1; (ii >= 0) && (shipChunks[ii] == null); ii--)
+        {
+            shipChunks[ii] = new Ship[CHUNKSIZE];
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: addShip
+ * Import: ship (Ship)
+ * Export: none
+ * Assertion: stores a copy of the ship at the end
+ * ************************************************************************/
+
+    public void addShip(Ship ship)
+    {
+        adoptShip(ship.clone());
+    }
+
+
+/***************************************************************************
+ * Submodule: adoptShip
+ * Import: ship (Ship)
+ * Export: none
+ * Assertion: stores the ship itself at the end
+ * ************************************************************************/
+
+    public void adoptShip(Ship ship)
+    {
+        int chunk = shipCount >>> CHUNKSHIFT;
+
+        checkWritable();
+
+        if ((chunk >= shipChunks.length) || (shipChunks[chunk] == null))
+        {
+            ensureCapacity(shipCount + 1);
+        }
+        shipChunks[chunk][shipCount & CHUNKMASK] = ship;
+        shipCount = shipCount + 1;
+    }
+
+
+/***************************************************************************
+ * Submodule: compact
+ * Import: keep (IntPredicate)
+ * Export: compacted (FleetStore)
+ * Assertion: a new store holding the ship objects that pass keep, none is copied
+ * ************************************************************************/
+
+    public FleetStore compact(IntPredicate keep)
+    {
+        ObjectFleetStore compacted = new ObjectFleetStore();
+
+        checkWritable();
+        markReadOnly();
+
+        for (int ii = 0; ii < shipCount; ii++)
+        {
+            if (keep.test(ii))
+            {
+                compacted.adoptShip(getShip(ii));
+            }
+        }
+        return compacted;
+    }
+
+
+// ACCESSORS
+    public Ship getShip(int index)
+    {
+        return shipChunks[index >>> CHUNKSHIFT][index & CHUNKMASK];
+    }
+
+
+    public int getShipCount()
+    {
+        return shipCount;
+    }
+
+
+/***************************************************************************
+ * Submodule: snapshot
+ * Import: count (integer)
+ * Export: frozen (FleetStore)
+ * Assertion: a read-only store sharing the chunk directory, chunks are only ever
+ *            written past the ships already in them, so the first count stay as they are,
+ *            the ships are shared too as a stored ship is never changed, copyShip hands
+ *            out copies
+ * ************************************************************************/
+
+    public FleetStore snapshot(int count)
+    {
+        if ((count < 0) || (count > shipCount))
+        {
+            throw new IllegalArgumentException("Invalid snapshot count");
+        }
+        return new ObjectFleetStore(shipChunks, count);
+    }
+}
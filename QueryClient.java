@@ -0,0 +1,271 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Load tests a QueryServer. Each connection sends its requests a
+ *          window at a time without waiting for the answers, then reports
+ *          how many were answered a second and the p50 and p99 latency
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+
+public class QueryClient implements Runnable
+{
+    // class constants
+    public static final int DEFAULTCONNECTIONS = 4;
+    public static final int DEFAULTREQUESTS = 100000;
+    public static final int DEFAULTPIPELINE = 16;
+    public static final int MAXDISTANCE = 5000;
+    public static final String USAGE = "Usage: java QueryClient PORT [CONNECTIONS [REQUESTS [PIPELINE]]]";
+
+
+    // private class fields
+    private int port;
+    private int requests;
+    private int pipeline;
+    private SplittableRandom random;
+    private long[] latencies;   // nanoseconds from sending each request to its last line
+    private int errorCount;
+    private IOException failure;
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inPort (integer), inRequests (integer), inPipeline (integer), seed (long)
+ * Export: address of new QueryClient
+ * Assertion: one connection that sends inRequests requests, inPipeline at a time
+ * ************************************************************************/
+
+    public QueryClient(int inPort, int inRequests, int inPipeline, long seed)
+    {
+        if ((inRequests < 1) || (inPipeline < 1))
+        {
+            throw new IllegalArgumentException("Invalid requests or pipeline");
+        }
+        port = inPort;
+        requests = inRequests;
+        pipeline = inPipeline;
+        random = new SplittableRandom(seed);
+        latencies = new long[inRequests];
+        errorCount = 0;
+        failure = null;
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: run
+ * Import: none
+ * Export: none
+ * Assertion: sends every request and times its answer, a failed connection is kept
+ *            for getFailure instead of thrown
+ * ************************************************************************/
+
+    public void run()
+    {
+        try (Socket socket = new Socket(QueryServer.HOST, port))
+        {
+            socket.setTcpNoDelay(true);
+            exchange(new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)),
+                     new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+        }
+        catch (IOException e)
+        {
+            failure = e;
+        }
+    }
+
+
+// ACCESSORS
+    public long[] getLatencies()
+    {
+        return latencies;
+    }
+
+
+    public int getErrorCount()
+    {
+        return errorCount;
+    }
+
+
+    public IOException getFailure()
+    {
+        return failure;
+    }
+
+
+/***************************************************************************
+ * Submodule: main
+ * Import: args (ARRAY OF String)
+ * Export: none
+ * Assertion: runs CONNECTIONS clients at once against the server on PORT and prints
+ *            the requests a second and the p50, p99 and largest latency
+ * ************************************************************************/
+
+    public static void main(String[] args)
+    {
+        int port, connections, requests, pipeline;
+        QueryClient[] clients;
+        Thread[] threads;
+        long[] allLatencies;
+        long start, elapsed;
+        int errors = 0;
+
+        try
+        {
+            if ((args.length < 1) || (args.length > 4))
+            {
+                throw new IllegalArgumentException(USAGE + ".");
+            }
+            port = Integer.parseInt(args[0]);
+            connections = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULTCONNECTIONS;
+            requests = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULTREQUESTS;
+            pipeline = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULTPIPELINE;
+
+            if ((connections < 1) || (requests < connections))
+            {
+                throw new IllegalArgumentException("Invalid connections or requests");
+            }
+            clients = new QueryClient[connections];
+            threads = new Thread[connections];
+
+            for (int ii = 0; ii < connections; ii++)
+            {
+                clients[ii] = new QueryClient(port, requests / connections, pipeline, 42 + ii);
+                threads[ii] = new Thread(clients[ii]);
+            }
+
+            start = System.nanoTime();
+            for (int ii = 0; ii < connections; ii++)
+            {
+                threads[ii].start();
+            }
+            for (int ii = 0; ii < connections; ii++)
+            {
+                threads[ii].join();
+            }
+            elapsed = System.nanoTime() - start;
+
+            allLatencies = new long[(requests / connections) * connections];
+            for (int ii = 0; ii < connections; ii++)
+            {
+                if (clients[ii].getFailure() != null)
+                {
+                    throw clients[ii].getFailure();
+                }
+                System.arraycopy(clients[ii].getLatencies(), 0, allLatencies, ii * (requests / connections),
+                                 requests / connections);
+                errors = errors + clients[ii].getErrorCount();
+            }
+            Arrays.sort(allLatencies);
+
+            System.out.println(allLatencies.length + " requests on " + connections + " connections, "
+                               + pipeline + " in flight each, in " + String.format("%.2f", elapsed / 1e9)
+                               + " s, " + String.format("%.0f", allLatencies.length / (elapsed / 1e9))
+                               + " requests a second");
+            System.out.println("Latency p50 " + micros(percentile(allLatencies, 50)) + " us, p99 "
+                               + micros(percentile(allLatencies, 99)) + " us, max "
+                               + micros(allLatencies[allLatencies.length - 1]) + " us, " + errors + " errors");
+        }
+        catch (Exception e)
+        {
+            System.out.println(e.getMessage() + " Sorry!");
+        }
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: exchange
+ * Import: in (BufferedReader), out (BufferedWriter)
+ * Export: none
+ * Assertion: writes a window of requests in one flush, then reads their answers in
+ *            order, each request's latency ends at its ok or error line
+ * ************************************************************************/
+
+    private void exchange(BufferedReader in, BufferedWriter out) throws IOException
+    {
+        int sent = 0;
+        int window;
+        long flushed;
+        String line;
+
+        while (sent < requests)
+        {
+            window = Math.min(pipeline, requests - sent);
+
+            for (int ii = 0; ii < window; ii++)
+            {
+                writeRequest(out);
+            }
+            flushed = System.nanoTime();
+            out.flush();
+
+            for (int ii = 0; ii < window; ii++)
+            {
+                line = in.readLine();
+
+                while ((line != null) && (!line.equals(CommandRunner.OK))
+                       && (!line.startsWith(CommandRunner.ERROR + "\t")))
+                {
+                    line = in.readLine();
+                }
+
+                if (line == null)
+                {
+                    throw new IOException("Server closed the connection");
+                }
+                if (!line.equals(CommandRunner.OK))
+                {
+                    errorCount++;
+                }
+                latencies[sent + ii] = System.nanoTime() - flushed;
+            }
+            sent = sent + window;
+        }
+        out.write("quit\n");
+        out.flush();
+    }
+
+
+/***************************************************************************
+ * Submodule: writeRequest
+ * Import: out (Writer)
+ * Export: none
+ * Assertion: writes a random request, about 70% destination checks, 25% serial
+ *            lookups and the rest counts
+ * ************************************************************************/
+
+    private void writeRequest(Writer out) throws IOException
+    {
+        int pick = random.nextInt(100);
+
+        if (pick < 70)
+        {
+            out.write("query " + random.nextInt(1, MAXDISTANCE + 1) + "\n");
+        }
+        else if (pick < 95)
+        {
+            out.write(String.format("get %03d.%03d\n", random.nextInt(100, 301), random.nextInt(1, 1000)));
+        }
+        else
+        {
+            out.write("count\n");
+        }
+    }
+
+
+    private static long percentile(long[] sorted, int percent)
+    {
+        return sorted[(int)((long)(sorted.length - 1) * percent / 100)];
+    }
+
+
+    private static String micros(long nanos)
+    {
+        return String.format("%.1f", nanos / 1000.0);
+    }
+}
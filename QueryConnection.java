@@ -0,0 +1,225 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: One client of a QueryServer. Keeps the part of a line that has
+ *          not fully arrived and the answers not yet sent, so a client can
+ *          send many commands without waiting and gets the answers back in
+ *          the same order. Lines stay unread while too many answers wait
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+public class QueryConnection
+{
+    // class constants
+    public static final int BUFFERSIZE = 1 << 16;
+    public static final int MAXLINE = 1 << 16;   // a longer line closes the connection
+
+
+    // private class fields
+    private SocketChannel channel;
+    private ByteBuffer input;
+    private byte[] line;                         // bytes of the line that has not ended yet
+    private int lineLength;
+    private StringBuilder answers;               // answers not yet encoded into output
+    private ByteBuffer output;                   // encoded answers, in write mode between calls
+    private boolean endOfStream;                 // the client closed its side, lines may still be waiting
+    private boolean inputEnded;                  // the client sent its last command, or quit
+    private boolean holding;                     // lines are waiting for the client to take its answers
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inChannel (SocketChannel)
+ * Export: address of new QueryConnection
+ * Assertion: a connection for inChannel with nothing read or waiting to be sent
+ * ************************************************************************/
+
+    public QueryConnection(SocketChannel inChannel)
+    {
+        if (inChannel == null)
+        {
+            throw new IllegalArgumentException("Invalid channel");
+        }
+        channel = inChannel;
+        input = ByteBuffer.allocate(BUFFERSIZE);
+        line = new byte[256];
+        lineLength = 0;
+        answers = new StringBuilder();
+        output = ByteBuffer.allocate(BUFFERSIZE);
+        endOfStream = false;
+        inputEnded = false;
+        holding = false;
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: read
+ * Import: runner (CommandRunner), maxPending (integer)
+ * Export: none
+ * Assertion: reads what the client has sent without waiting, as far as the input
+ *            buffer has room, then runs the lines through runLines
+ * ************************************************************************/
+
+    public void read(CommandRunner runner, int maxPending) throws IOException
+    {
+        if ((!endOfStream) && (channel.read(input) < 0))
+        {
+            endOfStream = true;
+        }
+        runLines(runner, maxPending);
+    }
+
+
+/***************************************************************************
+ * Submodule: runLines
+ * Import: runner (CommandRunner), maxPending (integer)
+ * Export: none
+ * Assertion: runs the complete lines already read through runner in order until
+ *            maxPending bytes of answers are waiting, the rest stay in the input until
+ *            the client has taken some answers, a quit command or the end of the
+ *            input stops any more lines being run
+ * ************************************************************************/
+
+    public void runLines(CommandRunner runner, int maxPending) throws IOException
+    {
+        byte next;
+
+        input.flip();
+
+        while ((input.hasRemaining()) && (!inputEnded) && (getPending() < maxPending))
+        {
+            next = input.get();
+
+            if (next == '\n')
+            {
+                if ((lineLength > 0) && (line[lineLength - 1] == '\r'))
+                {
+                    lineLength--;
+                }
+
+                if (runner.execute(new String(line, 0, lineLength, StandardCharsets.UTF_8), answers)
+                    == CommandRunner.QUITTING)
+                {
+                    inputEnded = true;
+                }
+                lineLength = 0;
+            }
+            else
+            {
+                if (lineLength == MAXLINE)
+                {
+                    throw new IOException("Line longer than " + MAXLINE + " bytes");
+                }
+                if (lineLength == line.length)
+                {
+                    line = Arrays.copyOf(line, Math.min(line.length * 2, MAXLINE));
+                }
+                line[lineLength] = next;
+                lineLength++;
+            }
+        }
+        holding = (input.hasRemaining()) && (!inputEnded);
+        input.compact();
+
+        if ((endOfStream) && (!holding) && (!inputEnded))
+        {
+            // the last line may have no newline
+            if (lineLength > 0)
+            {
+                runner.execute(new String(line, 0, lineLength, StandardCharsets.UTF_8), answers);
+            }
+            inputEnded = true;
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: write
+ * Import: none
+ * Export: none
+ * Assertion: encodes the waiting answers and writes as much as the client will take
+ *            without waiting, the rest stays for the next call
+ * ************************************************************************/
+
+    public void write() throws IOException
+    {
+        byte[] encoded;
+
+        if (answers.length() > 0)
+        {
+            encoded = answers.toString().getBytes(StandardCharsets.UTF_8);
+            answers.setLength(0);
+
+            if (output.remaining() < encoded.length)
+            {
+                output = grow(output, encoded.length);
+            }
+            output.put(encoded);
+        }
+        output.flip();
+        channel.write(output);
+        output.compact();
+
+        if ((output.position() == 0) && (output.capacity() > BUFFERSIZE))
+        {
+            output = ByteBuffer.allocate(BUFFERSIZE); // one large answer does not keep its buffer
+        }
+    }
+
+
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+
+// ACCESSORS
+/***************************************************************************
+ * Submodule: getPending
+ * Import: none
+ * Export: pending (integer)
+ * Assertion: about how many bytes of answers are still waiting to be sent
+ * ************************************************************************/
+
+    public int getPending()
+    {
+        return output.position() + answers.length();
+    }
+
+
+    public boolean isInputEnded()
+    {
+        return inputEnded;
+    }
+
+
+    public boolean isHolding()
+    {
+        return holding;
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: grow
+ * Import: buffer (ByteBuffer), extra (integer)
+ * Export: grown (ByteBuffer)
+ * Assertion: a buffer in write mode holding what buffer holds with room for at least
+ *            extra more bytes
+ * ************************************************************************/
+
+    private static ByteBuffer grow(ByteBuffer buffer, int extra)
+    {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
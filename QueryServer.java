@@ -0,0 +1,212 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Answers destination checks, serial lookups and ship counts for
+ *          other programs over TCP on this machine only. One thread serves
+ *          every client through a selector, using the CommandRunner line
+ *          protocol with the commands that change the fleet or scan all of
+ *          it refused, so no client holds up the others
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+
+public class QueryServer
+{
+    // class constants
+    public static final String HOST = "127.0.0.1";
+    public static final int MAXPENDING = 1 << 22; // answer bytes held for a client before its commands wait
+
+
+    // private class fields
+    private CommandRunner runner;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: ss (ShipStorage), port (integer)
+ * Export: address of new QueryServer
+ * Assertion: listens on HOST at port (any free port for 0), fails if ss is null or
+ *            the port cannot be used
+ * ************************************************************************/
+
+    public QueryServer(ShipStorage ss, int port) throws IOException
+    {
+        if ((port < 0) || (port > 65535))
+        {
+            throw new IllegalArgumentException("Invalid port");
+        }
+        runner = new CommandRunner(ss, true);
+        selector = Selector.open();
+
+        try
+        {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(HOST, port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException e)
+        {
+            selector.close();
+            throw e;
+        }
+        running = true;
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: serve
+ * Import: none
+ * Export: none
+ * Assertion: accepts clients and answers their commands until stop is called, then
+ *            closes every connection. A client that fails is closed on its own
+ * ************************************************************************/
+
+    public void serve() throws IOException
+    {
+        Iterator<SelectionKey> keys;
+        SelectionKey key;
+
+        try
+        {
+            while (running)
+            {
+                selector.select();
+                keys = selector.selectedKeys().iterator();
+
+                while (keys.hasNext())
+                {
+                    key = keys.next();
+                    keys.remove();
+
+                    if (key.isValid())
+                    {
+                        if (key.isAcceptable())
+                        {
+                            accept();
+                        }
+                        else
+                        {
+                            serveClient(key);
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            for (SelectionKey open : selector.keys())
+            {
+                open.channel().close();
+            }
+            selector.close();
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: stop
+ * Import: none
+ * Export: none
+ * Assertion: makes serve return soon after, safe to call from any thread
+ * ************************************************************************/
+
+    public void stop()
+    {
+        running = false;
+        selector.wakeup();
+    }
+
+
+// ACCESSORS
+    public int getPort()
+    {
+        return serverChannel.socket().getLocalPort();
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: accept
+ * Import: none
+ * Export: none
+ * Assertion: registers every waiting client for reading
+ * ************************************************************************/
+
+    private void accept() throws IOException
+    {
+        SocketChannel channel = serverChannel.accept();
+
+        while (channel != null)
+        {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new QueryConnection(channel));
+            channel = serverChannel.accept();
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: serveClient
+ * Import: key (SelectionKey)
+ * Export: none
+ * Assertion: runs the commands the client sent and writes back what it will take,
+ *            once MAXPENDING bytes of answers wait its commands wait too, and run
+ *            again as it catches up, it is closed once its input ended and all is sent
+ * ************************************************************************/
+
+    private void serveClient(SelectionKey key)
+    {
+        QueryConnection connection = (QueryConnection)key.attachment();
+        int interest = 0;
+
+        try
+        {
+            if (key.isReadable())
+            {
+                connection.read(runner, MAXPENDING);
+            }
+            else
+            {
+                connection.runLines(runner, MAXPENDING); // commands held back while the client caught up
+            }
+            connection.write();
+
+            if ((!connection.isInputEnded()) && (!connection.isHolding()))
+            {
+                interest = SelectionKey.OP_READ;
+            }
+            if ((connection.getPending() > 0) || (connection.isHolding()))
+            {
+                interest = interest | SelectionKey.OP_WRITE;
+            }
+
+            if (interest == 0)
+            {
+                connection.close();
+            }
+            else
+            {
+                key.interestOps(interest);
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            try
+            {
+                connection.close();
+            }
+            catch (IOException ex2)
+            {
+            }
+        }
+    }
+}
@@ -11,11 +11,15 @@ public abstract class Ship
     // class constants
     public static final int MINYEAR = 1950;
     public static final int MAXYEAR = 2022;
+    public static final int MINSERIALKEY = 100001; // packSerial of 100.001
+    public static final int MAXSERIALKEY = 300999; // packSerial of 300.999
 
     // private class fields
     private String serialNum;
+    private int serialKey; // packSerial of serialNum
     private int year;
     private Engine engine;
+    private double speed; // calcSpeed kept for calcTravel, NaN until needed or after a change
 
 /***********************************************************************
  *  Default Constructor
@@ -27,8 +31,10 @@ public abstract class Ship
     public Ship()
     {
         serialNum = "169.420";
+        serialKey = 169420;
         year = MAXYEAR;
-        engine = new Engine(engine);
+        engine = Engine.defaultEngine();
+        speed = Double.NaN;
     }
 
 
@@ -41,11 +47,15 @@ public abstract class Ship
 
     public Ship(String inSerialNum, int inYear, Engine inEngine)
     {
-        if ((validateSerialNum(inSerialNum)) && (validateYear(inYear)) && (validateEngine(inEngine)))
+        int key = packSerial(inSerialNum);
+
+        if ((key >= 0) && (validateYear(inYear)) && (validateEngine(inEngine)))
         {
             serialNum = inSerialNum;
+            serialKey = key;
             year = inYear;
-            engine = inEngine;
+            engine = inEngine; // engines never change, so it can be shared
+            speed = Double.NaN;
         }
         else
         {
@@ -64,8 +74,10 @@ public abstract class Ship
     public Ship(Ship inShip)
     {
         serialNum = inShip.getSerialNum();
+        serialKey = inShip.getSerialKey();
         year = inShip.getYear();
         engine = inShip.getEngine();
+        speed = Double.NaN;
     }
 
 
@@ -89,9 +101,12 @@ public abstract class Ship
 
     public void setSerialNum(String inSerialNum)
     {
-        if (validateSerialNum(inSerialNum))
+        int key = packSerial(inSerialNum);
+
+        if (key >= 0)
         {
             serialNum = inSerialNum;
+            serialKey = key;
         }
         else
         {
@@ -123,12 +138,34 @@ public abstract class Ship
  *  Submodule: setEngine
  *  Import: inEngine (Engine)
  *  Export: none
- *  Assertion: sets a copy of engine to inEngine
+ *  Assertion: sets engine to inEngine, fails if inEngine is null
  *  *********************************************************************/
 
     public void setEngine(Engine inEngine)
     {
-        engine = new Engine(inEngine);
+        if (validateEngine(inEngine))
+        {
+            engine = inEngine;
+            speed = Double.NaN;
+        }
+        else
+        {
+            throw new IllegalArgumentException("Invalid engine");
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: resetSpeed
+ *  Import: none
+ *  Export: none
+ *  Assertion: forgets the kept speed, subclasses call it when a field used by
+ *             calcSpeed changes
+ *  *********************************************************************/
+
+    protected void resetSpeed()
+    {
+        speed = Double.NaN;
     }
 
 
@@ -139,6 +176,12 @@ public abstract class Ship
     }
 
 
+    public int getSerialKey()
+    {
+        return serialKey;
+    }
+
+
     public int getYear()
     {
         return year;
@@ -147,7 +190,38 @@ public abstract class Ship
 
     public Engine getEngine()
     {
-        return new Engine(engine);
+        return engine;
+    }
+
+
+/***********************************************************************
+ *  Submodule: getCylinders
+ *  Import: none
+ *  Export: cylinders (integer)
+ *  Assertion: cylinders of the engine, for the speed calculations
+ *  *********************************************************************/
+
+    protected int getCylinders()
+    {
+        return engine.getCylinders();
+    }
+
+
+/***********************************************************************
+ *  Submodule: getSpeed
+ *  Import: none
+ *  Export: speed (real)
+ *  Assertion: calcSpeed, worked out the first time it is needed and kept until
+ *             the engine or a subclass field it depends on changes
+ *  *********************************************************************/
+
+    public double getSpeed()
+    {
+        if (Double.isNaN(speed))
+        {
+            speed = calcSpeed();
+        }
+        return speed;
     }
 
 
@@ -165,12 +239,30 @@ public abstract class Ship
             if (inObj instanceof Ship)
         {
             Ship inShip = (Ship)inObj;
-            same = (serialNum.equals(inShip.getSerialNum())) && (year == inShip.getYear())
-            && (engine.equals(inShip.getEngine()));
+            same = (serialKey == inShip.getSerialKey()) && (year == inShip.getYear())
+            && (engine == inShip.getEngine()); // engines are shared, one per value
         }
             return same;
     }
 
+
+/***********************************************************************
+ *  Submodule: hashCode
+ *  Import: none
+ *  Export: hash (integer)
+ *  Assertion: ships that are equal have the same hash
+ *  *********************************************************************/
+
+    public int hashCode()
+    {
+        int hash;
+
+        hash = serialKey;
+        hash = (31 * hash) + year;
+        hash = (31 * hash) + engine.hashCode();
+        return hash;
+    }
+
 /***********************************************************************
  *  Submodule: toString
  *  Import: none
@@ -194,48 +286,155 @@ public abstract class Ship
 
     public String toFileString()
     {
-        return serialNum + "," + year + "," + engine.getCylinders() + "," + engine.getFuel(); 
+        StringBuilder str = new StringBuilder();
+
+        appendFileString(str);
+        return str.toString();
     }
 
 
+/***********************************************************************
+ *  Submodule: appendFileString
+ *  Import: str (StringBuilder)
+ *  Export: none
+ *  Assertion: appends the fields shared by every ship in file format, subclasses
+ *             add their type and own fields around them
+ *  *********************************************************************/
+
+    public void appendFileString(StringBuilder str)
+    {
+        str.append(serialNum).append(',').append(year).append(',').append(engine.getCylinders())
+           .append(',').append(engine.getFuel());
+    }
+
+
+/***********************************************************************
+ *  Submodule: calcSpeed
+ *  Import: none
+ *  Export: speed (real)
+ *  Assertion: distance the ship covers per hour, travel time is distance / speed
+ *  *********************************************************************/
+
+    public abstract double calcSpeed();
+
+
 /***********************************************************************
  *  Submodule: calcTravel
  *  Import: travelDistance (integer)
- *  Export: subTime (real)
- *  Assertion: 
+ *  Export: travelTime (real)
+ *  Assertion: calculates the time it takes for the ship to travel a certain distance,
+ *             using the kept speed so nothing is allocated, subclasses whose time
+ *             was not worked out as distance / speed override it to keep their order
+ *  *********************************************************************/
+
+    public double calcTravel(int travelDistance)
+    {
+        return calcTravel(travelDistance, getSpeed());
+    }
+
+
+/***********************************************************************
+ *  Submodule: calcTravel
+ *  Import: travelDistance (integer), speed (real)
+ *  Export: travelTime (real)
+ *  Assertion: travel time for a ship of that speed, rounded to 2 decimal places
  *  *********************************************************************/
 
-    public abstract double calcTravel(int travelDistance);
+    public static double calcTravel(int travelDistance, double speed)
+    {
+        double travelTime;
+
+        travelTime = travelDistance / speed;
+
+        travelTime = Math.round(travelTime * 100.0) / 100.0; // rounds to 2 decimal places
+        return travelTime;
+    }
+
+
+/***********************************************************************
+ *  Submodule: calcTravel
+ *  Import: travelDistance (integer), divisor (real), factor (real)
+ *  Export: travelTime (real)
+ *  Assertion: (travelDistance / divisor) * factor rounded to 2 decimal places, in
+ *             that order, as the rounding of the last place depends on it
+ *  *********************************************************************/
+
+    public static double calcTravel(int travelDistance, double divisor, double factor)
+    {
+        double travelTime;
+
+        travelTime = (travelDistance / divisor) * factor;
+
+        travelTime = Math.round(travelTime * 100.0) / 100.0; // rounds to 2 decimal places
+        return travelTime;
+    }
 
 
 /************************************************************************
- * Submodule: validateSerialNum
- * Import: inSerialNum (real)
- * Export: valid (boolean)
- * Assertion: serial number must be be in format XXX.YYY 
- *            where XXX is between 100 and 300, YYY between 1 and 999 (inclusive)
+ * Submodule: packSerial
+ * Import: inSerialNum (String)
+ * Export: key (integer)
+ * Assertion: XXX * 1000 + YYY for a valid serial number, written exactly as XXX.YYY
+ *            with three digits each side, XXX between 100 and 300 and YYY between 1
+ *            and 999 (inclusive), -1 for anything else, without allocating
  * **********************************************************************/
 
-     private boolean validateSerialNum(String inSerialNum)
-     {
-        int XXX = 0, YYY = 0;
-        String[] serialNum = new String[2]; // creates array of strings size 2
+    public static int packSerial(String inSerialNum)
+    {
+        int key = -1;
+        int XXX = 0;
+        int YYY = 0;
+        boolean digits = true;
+        char digit;
 
-        try
-        {
-            serialNum = inSerialNum.split("\\."); // split the serial number where there is a "."
-            XXX = Integer.parseInt(serialNum[0]); // XXX is first index of array
-            YYY = Integer.parseInt(serialNum[1]); // YYY is second index of array
-        }
-        catch (NumberFormatException e)
+        if ((inSerialNum != null) && (inSerialNum.length() == 7) && (inSerialNum.charAt(3) == '.'))
         {
-            System.out.println("Invalid serial number " + inSerialNum);
+            // a sign, a space or a second '.' is not a digit, so "100.+01" and "100.001.5" fail here
+            for (int ii = 0; ii < 7; ii++)
+            {
+                digit = inSerialNum.charAt(ii);
+
+                if (ii < 3)
+                {
+                    XXX = (XXX * 10) + (digit - '0');
+                }
+                else if (ii > 3)
+                {
+                    YYY = (YYY * 10) + (digit - '0');
+                }
+                digits = (digits) && ((ii == 3) || ((digit >= '0') && (digit <= '9')));
+            }
+
+            if ((digits) && (XXX >= 100) && (XXX <= 300) && (YYY >= 1) && (YYY <= 999))
+            {
+                key = (XXX * 1000) + YYY;
+            }
         }
-        catch (ArrayIndexOutOfBoundsException e)
-        {
-            System.out.println("Invalid. Serial number must be in form XXX.YYY");   
-        }
-        return ((XXX >= 100) && (XXX <= 300) && (YYY >= 1) && (YYY <= 999) && (serialNum[0].length() == 3) && (serialNum[1].length() == 3));
+        return key;
+    }
+
+
+/************************************************************************
+ * Submodule: unpackSerial
+ * Import: key (integer)
+ * Export: serialNum (String)
+ * Assertion: the XXX.YYY serial number a packSerial key stands for
+ * **********************************************************************/
+
+    public static String unpackSerial(int key)
+    {
+        int XXX = key / 1000;
+        int YYY = key % 1000;
+        char[] serialNum = new char[7];
+
+        serialNum[0] = (char)('0' + (XXX / 100));
+        serialNum[1] = (char)('0' + ((XXX / 10) % 10));
+        serialNum[2] = (char)('0' + (XXX % 10));
+        serialNum[3] = '.';
+        serialNum[4] = (char)('0' + (YYY / 100));
+        serialNum[5] = (char)('0' + ((YYY / 10) % 10));
+        serialNum[6] = (char)('0' + (YYY % 10));
+        return new String(serialNum);
     }
 
 
@@ -0,0 +1,1607 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Times the whole fleet scans of ShipStorage on a generated fleet,
+ *          once on the calling thread and then split across 1, 2, 4 ... up
+ *          to the number of processors, and prints the speedup of each. The
+ *          suite times the everyday operations one call at a time with
+ *          latency percentiles and the bytes each call allocates, and topk
+ *          sets the bounded heap of fastestShips against a full sort. The check
+ *          mode runs self-checks and exits with 1 if any of them fails
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class ShipBenchmark
+{
+    // class constants
+    public static final int FLEETSIZE = 1000000;
+    public static final int WARMUPRUNS = 3;
+    public static final int TIMEDRUNS = 7;
+    public static final int SCANDISTANCE = -100; // a negative distance cannot use the fast index, so it scans
+    public static final long SEED = 42L;
+    public static final int[] SUITESIZES = {1000, 100000, 10000000};
+    public static final long WARMUPNANOS = 1000000000L;  // each operation runs this long before timing
+    public static final long SAMPLENANOS = 3000000000L;  // then is timed for about this long
+    public static final int MINSAMPLES = 5;
+    public static final int MAXSAMPLES = 100000;
+    public static final int MAXDISTANCE = 2000;
+    public static final int BATCHSIZE = 1000;            // distances per batched destinationCheck
+    public static final int SERIALSAMPLES = 4096;
+    public static final int PAGESIZE = 1000;             // ships per viewShips page
+    public static final int TRAVELCALLS = 1000000;
+    public static final int STRESSSIZE = 100000;
+    public static final int STRESSREADERS = 3;
+    public static final int STRESSWRITERS = 4;           // writer threads of checkStress
+    public static final long STRESSMILLIS = 3000L;
+    public static final int REPLAYCOMMANDS = 1000000;
+    public static final int[] TOPKS = {1, 2, 5, 10, 20, 50, 100}; // ship limits topk compares
+    public static final int TOPKDISTANCE = 1000;
+    public static final int CHECKFLEETS = 3000;          // random fleets compared with a plain scan
+    public static final int CHECKDISTANCES = 200;        // distances checked on each of them
+    public static final int CHECKSIZE = 10000;           // ships saved and loaded by checkSnapshot
+    public static final int CHECKROWS = 200000;          // rows of the file checkParallelLoad splits
+    public static final int CHECKROUNDS = 50;            // rounds of checkRemovals, each compared with a rebuilt fleet
+    public static final int CHECKCHANGES = 200;          // removals and upserts in each round
+    public static final int CHECKWRITES = 20000;         // writes of each checkStress writer
+    public static final long CHECKMILLIS = 20000L;       // longest checkStress waits for each of its threads
+
+
+    // private class fields
+    private static volatile long sink; // every timed result is added here so none of the work can be left out
+
+
+/***************************************************************************
+ * Submodule: main
+ * Import: args (ARRAY OF String)
+ * Export: none
+ * Assertion: runs the scan benchmark, args[0] is the fleet size (FLEETSIZE if left out),
+ *            or the suite when args[0] is "suite", the other args are its fleet
+ *            sizes (SUITESIZES if left out), or a menu replay when args[0] is
+ *            "replay", args[1] is the number of commands (REPLAYCOMMANDS if left out),
+ *            or the self-checks when args[0] is "check", or the top K comparison
+ *            when args[0] is "topk", args[1] is the fleet size (FLEETSIZE if left out)
+ * ************************************************************************/
+
+    public static void main(String[] args)
+    {
+        int fleetSize = FLEETSIZE;
+        int[] sizes = SUITESIZES;
+        FleetStore store;
+
+        try
+        {
+            if ((args.length > 0) && args[0].equals("suite"))
+            {
+                if (args.length > 1)
+                {
+                    sizes = new int[args.length - 1];
+
+                    for (int ii = 1; ii < args.length; ii++)
+                    {
+                        sizes[ii - 1] = Integer.parseInt(args[ii]);
+                    }
+                }
+                suite(sizes);
+            }
+            else if ((args.length > 0) && args[0].equals("check"))
+            {
+                if (check() > 0)
+                {
+                    System.exit(1);
+                }
+            }
+            else if ((args.length > 0) && args[0].equals("topk"))
+            {
+                if (args.length > 1)
+                {
+                    fleetSize = Integer.parseInt(args[1]);
+                }
+                store = new ObjectFleetStore(fleetSize);
+                makeFleet(new ShipStorage(store), fleetSize, SEED);
+                topKBenchmark(store);
+            }
+            else if ((args.length > 0) && args[0].equals("replay"))
+            {
+                replayBenchmark((args.length > 1) ? Integer.parseInt(args[1]) : REPLAYCOMMANDS);
+            }
+            else
+            {
+                if (args.length > 0)
+                {
+                    fleetSize = Integer.parseInt(args[0]);
+                }
+                scanBenchmark(makeFleet(fleetSize, SEED));
+            }
+        }
+        catch (Exception e)
+        {
+            System.out.println(e.getMessage() + " Sorry!");
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: check
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: runs every self-check, printing ok or FAIL for each, and returns how
+ *            many failed
+ * ************************************************************************/
+
+    public static int check() throws Exception
+    {
+        int failures = 0;
+
+        failures = failures + checkTravelTimes();
+        failures = failures + checkCopies();
+        failures = failures + checkSnapshot();
+        failures = failures + checkCompaction();
+        failures = failures + checkMappedStore();
+        failures = failures + checkMappedRemovals();
+        failures = failures + checkRemovals();
+        failures = failures + checkDuplicates();
+        failures = failures + checkStress();
+        failures = failures + checkParallelLoad();
+        failures = failures + (travelAllocation(new Submarine()) ? 0 : 1);
+        failures = failures + (travelAllocation(new FighterJet()) ? 0 : 1);
+
+        System.out.println((failures == 0) ? "All checks passed" : (failures + " checks failed"));
+        return failures;
+    }
+
+
+/***************************************************************************
+ * Submodule: checkTravelTimes
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: travel times keep the rounding of the original formulas, where a
+ *            submarine takes (distance / cylinders) * (1 / (10 + |depth|)), in
+ *            every store, and destinationCheck and findFastest pick the same ship
+ *            and time as a plain scan of CHECKFLEETS random fleets
+ * ************************************************************************/
+
+    public static int checkTravelTimes() throws Exception
+    {
+        // distance, cylinders, depth and time, each rounds apart from distance / speed
+        double[][] subs = {{84149, 2, -0.4, 4045.62}, {52221, 3, -154.8, 105.63}, {25770, 8, -333.6, 9.37},
+                           {65813, 11, -30.0, 149.58}, {52122, 7, -390.0, 18.62},
+                           {17493, 7, -270.0, 8.92}, {29087, 10, -384.4, 7.37}};
+        // distance, cylinders, wing span and time
+        double[][] jets = {{66614, 3, 14.67, 10.09}, {22222, 7, 8.37, 2.53}, {64827, 8, 7.59, 7.12}};
+        File file = File.createTempFile("ships", ".map");
+        FleetStore[] stores = {new ObjectFleetStore(), new ColumnFleetStore(), null};
+        Random random = new Random(SEED);
+        double[] row;
+        FleetStore store;
+        Ship ship;
+        boolean pinned = true;
+        boolean scanned = true;
+        int failures;
+
+        file.delete();
+
+        try
+        {
+            stores[2] = new MappedFleetStore(file.getPath());
+
+            for (int ii = 0; ii < subs.length + jets.length; ii++)
+            {
+                row = (ii < subs.length) ? subs[ii] : jets[ii - subs.length];
+
+                if (ii < subs.length)
+                {
+                    ship = new Submarine(String.format("100.%03d", ii + 1), 2000, "steel", row[2],
+                                         Engine.of((int)row[1], Engine.DSL));
+                    pinned = pinned && (Submarine.calcTravel((int)row[0], (int)row[1], row[2]) == row[3]);
+                }
+                else
+                {
+                    ship = new FighterJet(String.format("200.%03d", ii + 1), 2000, row[2], "bombs",
+                                          Engine.of((int)row[1], Engine.DSL));
+                }
+                pinned = pinned && (ship.calcTravel((int)row[0]) == row[3]);
+
+                for (int jj = 0; jj < stores.length; jj++)
+                {
+                    stores[jj].addShip(ship);
+                    pinned = pinned && (stores[jj].calcTravel(ii, (int)row[0]) == row[3]);
+                }
+            }
+        }
+        finally
+        {
+            if (stores[2] != null)
+            {
+                ((MappedFleetStore)stores[2]).close();
+            }
+            file.delete();
+        }
+
+        for (int ii = 0; ii < CHECKFLEETS; ii++)
+        {
+            store = (ii % 3 == 0) ? new ColumnFleetStore() : new ObjectFleetStore();
+            scanned = scanned && checkFastest(random, store, 1 + random.nextInt((ii % 2 == 0) ? 4 : 400));
+        }
+
+        failures = report("travel times keep the original rounding", pinned);
+        failures = failures + report("destinationCheck matches a plain scan", scanned);
+        return failures;
+    }
+
+
+/***************************************************************************
+ * Submodule: checkCopies
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: slowing down or renumbering the ships handed out by getShip, getBySerial
+ *            and getShipArray changes neither the stored ships nor the answers of
+ *            destinationCheck and findSerial
+ * ************************************************************************/
+
+    public static int checkCopies()
+    {
+        ShipStorage fleet = makeFleet(CHECKSIZE, SEED);
+        int[] distances = {TOPKDISTANCE};
+        int fastest = fleet.destinationCheck(distances).getShipIndex(0);
+        Ship ship = fleet.getShip(fastest);
+        Ship stored = ship.clone();
+        String serialNum = ship.getSerialNum();
+        String otherSerial = Ship.unpackSerial(Ship.MAXSERIALKEY);
+        int first = fleet.findSerial(serialNum);
+        boolean kept;
+
+        ship.setEngine(Engine.of(Engine.MINCYL, ship.getEngine().getFuel()));
+        ship.setSerialNum(otherSerial);
+        fleet.getBySerial(serialNum).setSerialNum(otherSerial);
+        fleet.getShipArray()[fastest].setEngine(Engine.of(Engine.MINCYL, ship.getEngine().getFuel()));
+
+        kept = fleet.getShip(fastest).equals(stored) && (fleet.findSerial(serialNum) == first)
+               && (fleet.destinationCheck(distances).getShipIndex(0) == fastest)
+               && (fleet.findFastest(TOPKDISTANCE) == fastest);
+
+        return report("changing a ship handed out leaves the storage alone", kept);
+    }
+
+
+/***************************************************************************
+ * Submodule: checkSnapshot
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: a fleet saved by saveSnapshot loads back equal into either store, and a
+ *            snapshot whose ship count or ordnance text is larger than the file, or
+ *            that was cut short, is refused without loading or allocating anything
+ * ************************************************************************/
+
+    public static int checkSnapshot() throws IOException
+    {
+        File file = File.createTempFile("ships", ".snap");
+        String fileName = file.getPath();
+        ShipStorage fleet = makeFleet(CHECKSIZE, SEED);
+        ShipStorage loaded = new ShipStorage();
+        ShipStorage columns = new ShipStorage(new ColumnFleetStore());
+        LoadReport report;
+        boolean roundTrip;
+        boolean refused;
+        byte[] saved;
+
+        try
+        {
+            FileManager.saveSnapshot(fleet, fileName);
+            report = FileManager.loadSnapshot(loaded, fileName);
+            FileManager.loadSnapshot(columns, fileName);
+            roundTrip = fleet.equals(loaded) && fleet.equals(columns) && (report.getRowsLoaded() == CHECKSIZE)
+                        && (report.getRowsRejected() == 0);
+
+            saved = Files.readAllBytes(file.toPath());
+            Files.write(file.toPath(), Arrays.copyOf(saved, saved.length - 1));
+            refused = loadsNothing(fileName);
+
+            // a ship count far past the end of the file, then ordnance text far past it
+            Files.write(file.toPath(), ByteBuffer.allocate(14).putInt(FileManager.SNAPSHOTMAGIC)
+                                                 .putShort(FileManager.SNAPSHOTVERSION)
+                                                 .putInt(Integer.MAX_VALUE).putInt(0).array());
+            refused = refused && loadsNothing(fileName);
+            Files.write(file.toPath(), ByteBuffer.allocate(18).putInt(FileManager.SNAPSHOTMAGIC)
+                                                 .putShort(FileManager.SNAPSHOTVERSION)
+                                                 .putInt(0).putInt(1).putInt(Integer.MAX_VALUE).array());
+            refused = refused && loadsNothing(fileName);
+        }
+        finally
+        {
+            file.delete();
+        }
+
+        return report("snapshots load back equal", roundTrip)
+               + report("corrupt snapshots are refused", refused);
+    }
+
+
+/***************************************************************************
+ * Submodule: checkCompaction
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: a snapshot taken before half the fleet is removed and compacted away still
+ *            reads the ships it had, in every store, and a compacted mapped store opens
+ *            again with only the ships that were left
+ * ************************************************************************/
+
+    public static int checkCompaction() throws IOException
+    {
+        File file = File.createTempFile("ships", ".store");
+        String fileName = file.getPath();
+        MappedFleetStore reopened = null;
+        FleetStore[] stores;
+        ShipStorage ss = null;
+        ShipStorage before;
+        String expected;
+        String left = null;
+        boolean kept = true;
+        boolean saved;
+
+        try
+        {
+            stores = new FleetStore[] {new ObjectFleetStore(), new ColumnFleetStore(), new MappedFleetStore(fileName)};
+
+            for (FleetStore store : stores)
+            {
+                ss = makeFleet(new ShipStorage(store), CHECKSIZE, SEED);
+                before = ss.snapshot();
+                expected = before.viewShips();
+
+                for (int ii = 0; ii < CHECKSIZE; ii = ii + 2)
+                {
+                    ss.remove(before.getShip(ii).getSerialNum());
+                }
+                ss.compact();
+                left = ss.viewShips();
+                kept = kept && before.viewShips().equals(expected) && (ss.getShipCount() < CHECKSIZE);
+            }
+
+            ss.close(); // the last one is the mapped store
+            reopened = new MappedFleetStore(fileName);
+            saved = new ShipStorage(reopened).viewShips().equals(left)
+                    && (!new File(fileName + MappedFleetStore.TEMPSUFFIX).exists());
+        }
+        finally
+        {
+            if (reopened != null)
+            {
+                reopened.close();
+            }
+            file.delete();
+            new File(fileName + MappedFleetStore.ORDNANCESUFFIX).delete();
+            new File(fileName + MappedFleetStore.TEMPSUFFIX).delete();
+        }
+
+        return report("snapshots keep their ships through a compaction", kept)
+               + report("a compacted mapped store opens again", saved);
+    }
+
+
+/***************************************************************************
+ * Submodule: checkMappedStore
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: a mapped store whose ordnance file holds a length past its end, or with
+ *            a record zeroed out, fails to open with an IOException instead of
+ *            allocating for the length or failing later in the indexes
+ * ************************************************************************/
+
+    public static int checkMappedStore() throws IOException
+    {
+        File file = File.createTempFile("ships", ".store");
+        String fileName = file.getPath();
+        Path ordnancePath = Paths.get(fileName + MappedFleetStore.ORDNANCESUFFIX);
+        byte[] ordnanceFile;
+        byte[] storeFile;
+        boolean refused;
+
+        try
+        {
+            makeFleet(new ShipStorage(new MappedFleetStore(fileName)), CHECKSIZE, SEED).close();
+            ordnanceFile = Files.readAllBytes(ordnancePath);
+
+            Files.write(ordnancePath, ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array());
+            refused = opensNot(fileName);
+
+            Files.write(ordnancePath, ordnanceFile);
+            storeFile = Files.readAllBytes(file.toPath());
+            Arrays.fill(storeFile, MappedFleetStore.HEADERBYTES + (5 * MappedFleetStore.RECORDBYTES),
+                        MappedFleetStore.HEADERBYTES + (6 * MappedFleetStore.RECORDBYTES), (byte)0);
+            Files.write(file.toPath(), storeFile);
+            refused = refused && opensNot(fileName);
+        }
+        finally
+        {
+            file.delete();
+            ordnancePath.toFile().delete();
+        }
+        return report("corrupt mapped stores are refused", refused);
+    }
+
+
+/***************************************************************************
+ * Submodule: checkMappedRemovals
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: a removal and an upsert in a mapped store are still there when the file
+ *            is opened again while the first store was never closed, as after a
+ *            program that was killed, with no removed ship or upsert duplicate back
+ * ************************************************************************/
+
+    public static int checkMappedRemovals() throws IOException
+    {
+        File file = File.createTempFile("ships", ".store");
+        String fileName = file.getPath();
+        MappedFleetStore first = null;
+        MappedFleetStore reopened = null;
+        ShipStorage ss;
+        ShipStorage again;
+        String removed;
+        boolean survived;
+
+        try
+        {
+            first = new MappedFleetStore(fileName);
+            ss = makeFleet(new ShipStorage(first), CHECKSIZE, SEED);
+            removed = ss.getShip(3).getSerialNum();
+            ss.remove(removed);
+            ss.upsert(ss.getShip(7));
+
+            reopened = new MappedFleetStore(fileName);
+            again = new ShipStorage(reopened);
+            survived = (again.getShipCount() == ss.getShipCount()) && (again.getShipCount() < CHECKSIZE)
+                       && (again.getBySerial(removed) == null)
+                       && (again.viewShips().equals(ss.viewShips()))
+                       && (again.findDuplicates().equals(ss.findDuplicates()));
+        }
+        finally
+        {
+            if (reopened != null)
+            {
+                reopened.close();
+            }
+            if (first != null)
+            {
+                first.close();
+            }
+            file.delete();
+            new File(fileName + MappedFleetStore.ORDNANCESUFFIX).delete();
+        }
+        return report("mapped store removals survive a restart without close", survived);
+    }
+
+
+/***************************************************************************
+ * Submodule: checkRemovals
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: after every round of random removals and upserts, which leave removed ships
+ *            in place until the fleet is sparse enough to compact, the storage answers
+ *            destinationCheck, findFastest, fastestShips and getBySerial as a fleet built
+ *            again from its ships does, and a snapshot from the start of the round still
+ *            reads the ships it had
+ * ************************************************************************/
+
+    public static int checkRemovals()
+    {
+        Random random = new Random(SEED);
+        ShipStorage fleet = makeFleet(CHECKSIZE, SEED);
+        Ship[] ships = fleet.getShipArray();
+        ShipStorage rebuilt;
+        ShipStorage before;
+        String expected;
+        String serialNum;
+        int distance;
+        boolean same = true;
+        boolean kept = true;
+        boolean compacted = false;
+
+        for (int ii = 0; ii < CHECKROUNDS; ii++)
+        {
+            before = fleet.snapshot();
+            expected = before.viewShips();
+
+            for (int jj = 0; jj < CHECKCHANGES; jj++)
+            {
+                if (random.nextBoolean())
+                {
+                    fleet.remove(ships[random.nextInt(ships.length)].getSerialNum());
+                }
+                else
+                {
+                    fleet.upsert(ships[random.nextInt(ships.length)]);
+                }
+            }
+            compacted = compacted || (fleet.getPlaceCount() < before.getPlaceCount());
+
+            rebuilt = new ShipStorage();
+            for (Ship ship : fleet.getShipArray())
+            {
+                rebuilt.addShip(ship);
+            }
+            same = same && fleet.equals(rebuilt) && (fleet.getShipCount() == rebuilt.getShipCount())
+                   && fleet.destinationCheck(SCANDISTANCE).equals(rebuilt.destinationCheck(SCANDISTANCE));
+
+            for (int jj = 0; (same) && (jj < CHECKDISTANCES); jj++)
+            {
+                distance = random.nextInt(MAXDISTANCE);
+                serialNum = ships[random.nextInt(ships.length)].getSerialNum();
+                same = fleet.destinationCheck(distance).equals(rebuilt.destinationCheck(distance))
+                       && fleet.getShip(fleet.findFastest(distance)).equals(rebuilt.getShip(rebuilt.findFastest(distance)))
+                       && sameShips(fleet, fleet.fastestShips(distance, TOPKS[3]), rebuilt,
+                                    rebuilt.fastestShips(distance, TOPKS[3]))
+                       && Objects.equals(fleet.getBySerial(serialNum), rebuilt.getBySerial(serialNum));
+            }
+            kept = kept && before.viewShips().equals(expected);
+        }
+
+        return report("removals and upserts answer as a rebuilt fleet, through a compaction", same && compacted)
+               + report("snapshots keep their ships through removals", kept);
+    }
+
+
+/***************************************************************************
+ * Submodule: checkDuplicates
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: findDuplicates split into hash partitions on a pool of four finds the same
+ *            groups in the same order as a single scan, on a fleet of each kind of heap
+ *            store with every third ship removed
+ * ************************************************************************/
+
+    public static int checkDuplicates()
+    {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        FleetStore[] stores = new FleetStore[] {new ObjectFleetStore(), new ColumnFleetStore()};
+        ShipStorage ss;
+        ShipStorage before;
+        String single;
+        boolean same = true;
+
+        try
+        {
+            for (FleetStore store : stores)
+            {
+                ss = makeFleet(new ShipStorage(store), CHECKSIZE, SEED);
+                before = ss.snapshot();
+
+                for (int ii = 0; ii < CHECKSIZE; ii = ii + 3)
+                {
+                    ss.remove(before.getShip(ii).getSerialNum());
+                }
+
+                ss.setFleetScan(new FleetScan(pool, Integer.MAX_VALUE));
+                single = ss.findDuplicates();
+                ss.setFleetScan(new FleetScan(pool, CHECKSIZE / 64));
+                same = same && (single.length() > 0) && ss.findDuplicates().equals(single);
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        return report("findDuplicates split across a pool matches a single scan", same);
+    }
+
+
+/***************************************************************************
+ * Submodule: checkStress
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: STRESSWRITERS threads each adding, upserting and removing ships of their
+ *            own serial numbers leave the same ships, count, serial lookups and travel
+ *            times as the same writes made one writer after another, and readers running
+ *            meanwhile on snapshots always find the ship an answer names with its time,
+ *            threads still running after CHECKMILLIS fail both
+ * ************************************************************************/
+
+    public static int checkStress() throws InterruptedException
+    {
+        ShipStorage ss = makeFleet(CHECKSIZE, SEED);
+        ShipStorage sequential = makeFleet(CHECKSIZE, SEED);
+        Ship[] pool = makeFleet(CHECKSIZE, SEED + 1).getShipArray();
+        List<List<Ship>> writes = new ArrayList<List<Ship>>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[STRESSWRITERS + STRESSREADERS];
+        int[] distances = {0, 100, MAXDISTANCE, SCANDISTANCE};
+        TravelResult expected;
+        TravelResult answered;
+        Ship[] shipsOne;
+        Ship[] shipsTwo;
+        boolean finished = true;
+        boolean same = false;
+
+        // a serial number belongs to one writer, so its ships change in one order however the writers interleave
+        for (int ii = 0; ii < STRESSWRITERS; ii++)
+        {
+            writes.add(new ArrayList<Ship>());
+        }
+        for (Ship ship : pool)
+        {
+            writes.get(ship.getSerialKey() % STRESSWRITERS).add(ship);
+        }
+
+        for (int ii = 0; ii < STRESSWRITERS; ii++)
+        {
+            final List<Ship> own = writes.get(ii);
+
+            threads[ii] = new Thread(() ->
+            {
+                for (int jj = 0; jj < CHECKWRITES; jj++)
+                {
+                    try
+                    {
+                        stressWrite(ss, own.get(jj % own.size()), jj);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        for (int ii = STRESSWRITERS; ii < threads.length; ii++)
+        {
+            threads[ii] = new Thread(() ->
+            {
+                TravelResult result = new TravelResult(distances.length);
+                ShipStorage frozen;
+                int shipIndex;
+                int done = 0;
+
+                while (running.get())
+                {
+                    try
+                    {
+                        frozen = ss.snapshot();
+                        frozen.destinationCheck(distances, result);
+
+                        for (int jj = 0; jj < distances.length; jj++)
+                        {
+                            shipIndex = result.getShipIndex(jj);
+
+                            if ((shipIndex == TravelResult.NOSHIP)
+                                || (frozen.getShip(shipIndex).calcTravel(distances[jj]) != result.getTravelTime(jj)))
+                            {
+                                errors.incrementAndGet();
+                            }
+                        }
+                        ss.getBySerial(pool[done % pool.length].getSerialNum());
+                    }
+                    catch (RuntimeException e)
+                    {
+                        errors.incrementAndGet();
+                    }
+                    done++;
+                }
+            });
+        }
+
+        for (int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii].setDaemon(true); // so a stuck thread cannot keep the check from ending
+            threads[ii].start();
+        }
+        for (int ii = 0; ii < STRESSWRITERS; ii++)
+        {
+            threads[ii].join(CHECKMILLIS);
+            finished = finished && (!threads[ii].isAlive());
+        }
+        running.set(false);
+        for (int ii = STRESSWRITERS; ii < threads.length; ii++)
+        {
+            threads[ii].join(CHECKMILLIS);
+            finished = finished && (!threads[ii].isAlive());
+        }
+
+        // a writer stuck on a broken index leaves nothing to compare
+        if (finished)
+        {
+            for (int ii = 0; ii < STRESSWRITERS; ii++)
+            {
+                for (int jj = 0; jj < CHECKWRITES; jj++)
+                {
+                    stressWrite(sequential, writes.get(ii).get(jj % writes.get(ii).size()), jj);
+                }
+            }
+
+            same = (ss.getShipCount() == sequential.getShipCount());
+
+            for (int ii = 0; (same) && (ii < pool.length); ii++)
+            {
+                same = Objects.equals(ss.getBySerial(pool[ii].getSerialNum()),
+                                      sequential.getBySerial(pool[ii].getSerialNum()));
+            }
+
+            // which of two equally quick ships comes first depends on the interleaving, the time does not
+            answered = ss.destinationCheck(distances);
+            expected = sequential.destinationCheck(distances);
+
+            for (int ii = 0; ii < distances.length; ii++)
+            {
+                same = same && (answered.getTravelTime(ii) == expected.getTravelTime(ii));
+            }
+
+            shipsOne = ss.getShipArray();
+            shipsTwo = sequential.getShipArray();
+            Arrays.sort(shipsOne, Comparator.comparing(Ship::toFileString));
+            Arrays.sort(shipsTwo, Comparator.comparing(Ship::toFileString));
+            same = same && Arrays.equals(shipsOne, shipsTwo);
+        }
+
+        return report(STRESSWRITERS + " writers at once leave what they do one after another", same)
+               + report("readers beside them get whole answers and no errors", (finished) && (errors.get() == 0));
+    }
+
+
+/***************************************************************************
+ * Submodule: checkParallelLoad
+ * Import: none
+ * Export: failures (integer)
+ * Assertion: parallelLoadFile split four ways adds the same ships in the same order as
+ *            loadFile, and rejects the same rows, on a file of CHECKROWS rows, large
+ *            enough to split, with some invalid rows
+ * ************************************************************************/
+
+    public static int checkParallelLoad() throws IOException
+    {
+        File file = File.createTempFile("ships", ".csv");
+        ShipStorage read = new ShipStorage();
+        ShipStorage parallel = new ShipStorage();
+        LoadReport readReport;
+        LoadReport parallelReport;
+        boolean same;
+
+        try
+        {
+            new FleetGenerator(SEED, FleetGenerator.DEFAULTDUPLICATES, 0.01).writeFile(file.getPath(), CHECKROWS);
+            readReport = FileManager.loadFile(read, file.getPath());
+            parallelReport = FileManager.parallelLoadFile(parallel, file.getPath(), 4);
+            same = read.equals(parallel) && (read.getShipCount() > 0)
+                   && (readReport.getRowsRejected() == parallelReport.getRowsRejected())
+                   && readReport.getErrors().equals(parallelReport.getErrors());
+        }
+        finally
+        {
+            file.delete();
+        }
+        return report("parallelLoadFile matches loadFile", same);
+    }
+
+
+/***************************************************************************
+ * Submodule: scanBenchmark
+ * Import: ss (ShipStorage)
+ * Export: none
+ * Assertion: prints the median time of findDuplicates and of a scanning findFastest,
+ *            sequential first and then on pools of 1, 2, 4 ... threads up to the
+ *            number of processors, with the speedup over sequential
+ * ************************************************************************/
+
+    public static void scanBenchmark(ShipStorage ss)
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+        double sequentialDupes;
+        double sequentialFastest;
+        double dupes;
+        double fastest;
+        ForkJoinPool pool;
+
+        System.out.println("Scanning " + ss.getShipCount() + " ships, " + processors + " processors");
+        System.out.println("threads  duplicates ms  speedup  fastest ms  speedup");
+
+        ss.setFleetScan(new FleetScan(ForkJoinPool.commonPool(), Integer.MAX_VALUE));
+        sequentialDupes = timeDuplicates(ss);
+        sequentialFastest = timeFastest(ss);
+        printRow("seq", sequentialDupes, 1.0, sequentialFastest, 1.0);
+
+        for (int threads = 1; threads <= processors; threads = nextThreads(threads, processors))
+        {
+            pool = new ForkJoinPool(threads);
+
+            try
+            {
+                ss.setFleetScan(new FleetScan(pool, FleetScan.DEFAULTTHRESHOLD / 4));
+                dupes = timeDuplicates(ss);
+                fastest = timeFastest(ss);
+                printRow(Integer.toString(threads), dupes, sequentialDupes / dupes, fastest,
+                         sequentialFastest / fastest);
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+        ss.setFleetScan(new FleetScan());
+    }
+
+
+/***************************************************************************
+ * Submodule: suite
+ * Import: sizes (ARRAY OF integer)
+ * Export: none
+ * Assertion: times each operation on a column-stored fleet of every size, then checks
+ *            calcTravel allocates nothing and runs readers against a writer
+ * ************************************************************************/
+
+    public static void suite(int[] sizes) throws Exception
+    {
+        ShipStorage ss;
+
+        System.out.println("     ships  operation                  runs         ops/s      p50 us      "
+                           + "p99 us      max us    bytes/op");
+
+        for (int ii = 0; ii < sizes.length; ii++)
+        {
+            // 21 bytes a ship keeps the largest fleets inside a default heap
+            ss = makeFleet(new ShipStorage(new ColumnFleetStore(sizes[ii])), sizes[ii], SEED);
+            operationBenchmark(ss);
+        }
+        travelAllocation(makeFleet(1, SEED).getShip(0));
+        stressBenchmark(makeFleet(STRESSSIZE, SEED), makeFleet(STRESSSIZE, SEED + 1).getShipArray());
+    }
+
+
+/***************************************************************************
+ * Submodule: operationBenchmark
+ * Import: ss (ShipStorage)
+ * Export: none
+ * Assertion: prints a row for each everyday operation on ss, the file operations go
+ *            through a temporary file that is deleted afterwards
+ * ************************************************************************/
+
+    public static void operationBenchmark(ShipStorage ss) throws Exception
+    {
+        Random random = new Random(SEED);
+        int count = ss.getShipCount();
+        int[] distances = new int[BATCHSIZE];
+        String[] serials = new String[SERIALSAMPLES];
+        TravelResult result = new TravelResult(BATCHSIZE);
+        Writer discard = Writer.nullWriter();
+        File file = File.createTempFile("ships", ".csv");
+        String fileName = file.getPath();
+
+        for (int ii = 0; ii < BATCHSIZE; ii++)
+        {
+            distances[ii] = random.nextInt(MAXDISTANCE);
+        }
+        for (int ii = 0; ii < SERIALSAMPLES; ii++)
+        {
+            serials[ii] = ss.getShip(random.nextInt(count)).getSerialNum();
+        }
+
+        try
+        {
+            timeOperation(count, "destinationCheck",
+                          () -> ss.destinationCheck(ThreadLocalRandom.current().nextInt(MAXDISTANCE)));
+            timeOperation(count, "destinationCheck x" + BATCHSIZE, () ->
+            {
+                ss.destinationCheck(distances, result);
+                return result;
+            });
+            timeOperation(count, "getBySerial",
+                          () -> ss.getBySerial(serials[ThreadLocalRandom.current().nextInt(SERIALSAMPLES)]));
+            timeOperation(count, "findDuplicates", () ->
+            {
+                sink = sink + ss.findDuplicates(discard);
+                return discard;
+            });
+            timeOperation(count, "viewShips page", () ->
+            {
+                sink = sink + ss.viewShips(discard,
+                                           ThreadLocalRandom.current().nextInt(Math.max(1, count - PAGESIZE)),
+                                           PAGESIZE);
+                return discard;
+            });
+            timeOperation(count, "writeOneRow", () ->
+            {
+                FileManager.writeOneRow(ss, fileName);
+                return file;
+            });
+            timeOperation(count, "readFile", () ->
+            {
+                ShipStorage loaded = new ShipStorage(new ColumnFleetStore());
+
+                FileManager.readFile(loaded, fileName);
+                return loaded;
+            });
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: travelAllocation
+ * Import: ship (Ship)
+ * Export: passed (boolean)
+ * Assertion: prints the bytes allocated by TRAVELCALLS calls of each calcTravel after
+ *            warming them up, and FAIL unless that is 0, as the hot path must not allocate
+ * ************************************************************************/
+
+    public static boolean travelAllocation(Ship ship)
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)
+                                                  ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        double speed = ship.getSpeed();
+        double total = 0.0;
+        long allocated = 0;
+
+        for (int run = 0; run < 2; run++)
+        {
+            // the first run warms up, only the second is counted
+            allocated = threads.getThreadAllocatedBytes(threadId);
+
+            for (int ii = 0; ii < TRAVELCALLS; ii++)
+            {
+                total = total + ship.calcTravel(ii % MAXDISTANCE) + Ship.calcTravel(ii % MAXDISTANCE, speed);
+            }
+            allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+        }
+        sink = sink + (long)total;
+        System.out.println(((allocated == 0) ? "ok    " : "FAIL  ") + "calcTravel of a " + ship.getClass().getSimpleName()
+                           + ": " + (2 * TRAVELCALLS)
+                           + " calls allocated " + allocated + " bytes");
+        return (allocated == 0);
+    }
+
+
+/***************************************************************************
+ * Submodule: stressBenchmark
+ * Import: ss (ShipStorage), writes (ARRAY OF Ship)
+ * Export: none
+ * Assertion: for STRESSMILLIS one thread adds, upserts and removes the ships in writes
+ *            while STRESSREADERS threads run destination checks and serial lookups,
+ *            then prints the rate of each side and how many calls failed
+ * ************************************************************************/
+
+    public static void stressBenchmark(ShipStorage ss, Ship[] writes) throws InterruptedException
+    {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writeCount = new AtomicLong();
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[STRESSREADERS + 1];
+        long start = System.nanoTime();
+        double seconds;
+
+        threads[0] = new Thread(() ->
+        {
+            long done = 0;
+
+            while (running.get())
+            {
+                try
+                {
+                    stressWrite(ss, writes[(int)(done % writes.length)], done);
+                }
+                catch (RuntimeException e)
+                {
+                    errors.incrementAndGet();
+                }
+                done++;
+            }
+            writeCount.set(done);
+        });
+
+        for (int ii = 1; ii <= STRESSREADERS; ii++)
+        {
+            threads[ii] = new Thread(() ->
+            {
+                int[] distances = {0, 100, MAXDISTANCE, -1};
+                TravelResult result = new TravelResult(distances.length);
+                long done = 0;
+
+                while (running.get())
+                {
+                    try
+                    {
+                        ss.destinationCheck(distances, result);
+                        ss.getBySerial(writes[(int)(done % writes.length)].getSerialNum());
+                    }
+                    catch (RuntimeException e)
+                    {
+                        errors.incrementAndGet();
+                    }
+                    done++;
+                }
+                reads.addAndGet(done);
+            });
+        }
+
+        for (int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii].start();
+        }
+        Thread.sleep(STRESSMILLIS);
+        running.set(false);
+
+        for (int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii].join();
+        }
+        seconds = (System.nanoTime() - start) / 1.0e9;
+
+        System.out.println(String.format("stress: %d readers %.0f reads/s, 1 writer %.0f writes/s, %d errors, "
+                                         + "%d ships left", STRESSREADERS, reads.get() / seconds,
+                                         writeCount.get() / seconds, errors.get(), ss.getShipCount()));
+    }
+
+
+/***************************************************************************
+ * Submodule: topKBenchmark
+ * Import: store (FleetStore)
+ * Export: none
+ * Assertion: for each limit in TOPKS prints the median time of fastestShips, which
+ *            keeps a bounded heap, and of sorting every ship's time in store and
+ *            taking the first ones, with the speedup of the heap and whether both agree
+ * ************************************************************************/
+
+    public static void topKBenchmark(FleetStore store)
+    {
+        ShipStorage ss = new ShipStorage(store);
+        TravelResult heapResult = new TravelResult(TOPKS[TOPKS.length - 1]);
+        TravelResult sortResult = new TravelResult(TOPKS[TOPKS.length - 1]);
+        double heapMillis;
+        double sortMillis;
+
+        System.out.println("Top K of " + ss.getShipCount() + " ships at a distance of " + TOPKDISTANCE);
+        System.out.println("      K  heap ms  sort ms  speedup  same");
+
+        for (int ii = 0; ii < TOPKS.length; ii++)
+        {
+            heapMillis = timeTopK(ss, null, TOPKS[ii], heapResult);
+            sortMillis = timeTopK(ss, store, TOPKS[ii], sortResult);
+
+            System.out.println(String.format("%7d  %7.2f  %7.2f  %7.2f  %s", TOPKS[ii], heapMillis, sortMillis,
+                                             sortMillis / heapMillis,
+                                             heapResult.toString().equals(sortResult.toString()) ? "yes" : "NO"));
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: replayBenchmark
+ * Import: commands (integer)
+ * Export: none
+ * Assertion: feeds the menu a recorded session of commands menu commands, half adding
+ *            a generated ship and half destination checks, and prints how fast the
+ *            answers are read and the output written
+ * ************************************************************************/
+
+    public static void replayBenchmark(int commands)
+    {
+        FleetGenerator generator = new FleetGenerator(SEED);
+        StringBuilder script = new StringBuilder();
+        UserInterface ui;
+        byte[] input;
+        long start;
+        double seconds;
+
+        for (int ii = 0; ii < commands; ii++)
+        {
+            if (ii % 2 == 0)
+            {
+                appendAddShip(script, generator.nextShip());
+            }
+            else
+            {
+                script.append("2\n").append(ii % MAXDISTANCE).append('\n');
+            }
+        }
+        script.append("7\n");
+        input = script.toString().getBytes(StandardCharsets.US_ASCII);
+        ui = new UserInterface(new ShipStorage(new ColumnFleetStore(commands / 2)),
+                               new ByteArrayInputStream(input), OutputStream.nullOutputStream());
+
+        start = System.nanoTime();
+        ui.shipMenu();
+        seconds = (System.nanoTime() - start) / 1.0e9;
+
+        System.out.println(String.format("Replayed %d commands (%.1f MB of answers) in %.2f s, %.0f commands/s",
+                                         commands, input.length / 1.0e6, seconds, commands / seconds));
+    }
+
+
+/***************************************************************************
+ * Submodule: makeFleet
+ * Import: fleetSize (integer), seed (long)
+ * Export: ss (ShipStorage)
+ * Assertion: a storage of fleetSize valid ships drawn from seed
+ * ************************************************************************/
+
+    public static ShipStorage makeFleet(int fleetSize, long seed)
+    {
+        return makeFleet(new ShipStorage(fleetSize), fleetSize, seed);
+    }
+
+
+/***************************************************************************
+ * Submodule: makeFleet
+ * Import: ss (ShipStorage), fleetSize (integer), seed (long)
+ * Export: ss (ShipStorage)
+ * Assertion: adds fleetSize ships drawn from seed to an empty ss, so the fleet can
+ *            be kept in any store, FleetGenerator makes about one ship in twenty
+ *            repeat an earlier one so findDuplicates has groups to find
+ * ************************************************************************/
+
+    public static ShipStorage makeFleet(ShipStorage ss, int fleetSize, long seed)
+    {
+        new FleetGenerator(seed).fill(ss, fleetSize);
+        return ss;
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: sameShips
+ * Import: fleetOne (ShipStorage), resultOne (TravelResult), fleetTwo (ShipStorage),
+ *         resultTwo (TravelResult)
+ * Export: same (boolean)
+ * Assertion: the two results list equal ships with equal times in the same order, each
+ *            index read in its own fleet
+ * ************************************************************************/
+
+    private static boolean sameShips(ShipStorage fleetOne, TravelResult resultOne, ShipStorage fleetTwo,
+                                     TravelResult resultTwo)
+    {
+        boolean same = (resultOne.getCount() == resultTwo.getCount());
+
+        for (int ii = 0; (same) && (ii < resultOne.getCount()); ii++)
+        {
+            same = fleetOne.getShip(resultOne.getShipIndex(ii)).equals(fleetTwo.getShip(resultTwo.getShipIndex(ii)))
+                   && (resultOne.getTravelTime(ii) == resultTwo.getTravelTime(ii));
+        }
+        return same;
+    }
+
+
+/***************************************************************************
+ * Submodule: timeOperation
+ * Import: ships (integer), name (String), operation (Callable)
+ * Export: none
+ * Assertion: runs operation for WARMUPNANOS, then times single calls for SAMPLENANOS
+ *            (at least MINSAMPLES, at most MAXSAMPLES) and prints the calls a second,
+ *            the latency percentiles and the bytes allocated a call on this thread
+ * ************************************************************************/
+
+    private static void timeOperation(int ships, String name, Callable<?> operation) throws Exception
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)
+                                                  ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long[] nanos = new long[MAXSAMPLES];
+        int samples = 0;
+        long totalNanos = 0;
+        long deadline;
+        long start;
+        long allocated;
+
+        deadline = System.nanoTime() + WARMUPNANOS;
+        sink = sink + System.identityHashCode(operation.call());
+
+        while (System.nanoTime() < deadline)
+        {
+            sink = sink + System.identityHashCode(operation.call());
+        }
+
+        deadline = System.nanoTime() + SAMPLENANOS;
+        allocated = threads.getThreadAllocatedBytes(threadId);
+
+        while ((samples < MINSAMPLES) || ((samples < MAXSAMPLES) && (System.nanoTime() < deadline)))
+        {
+            start = System.nanoTime();
+            sink = sink + System.identityHashCode(operation.call());
+            nanos[samples] = System.nanoTime() - start;
+            totalNanos = totalNanos + nanos[samples];
+            samples++;
+        }
+        allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+        Arrays.sort(nanos, 0, samples);
+
+        System.out.println(String.format("%10d  %-22s  %7d  %12.1f  %10.2f  %10.2f  %10.2f  %10d", ships, name,
+                                         samples, samples / (totalNanos / 1.0e9),
+                                         percentile(nanos, samples, 0.50) / 1.0e3,
+                                         percentile(nanos, samples, 0.99) / 1.0e3,
+                                         nanos[samples - 1] / 1.0e3, allocated / samples));
+    }
+
+
+/***************************************************************************
+ * Submodule: checkFastest
+ * Import: random (Random), store (FleetStore), fleetSize (integer)
+ * Export: passed (boolean)
+ * Assertion: fills store with fleetSize random ships, deep and shallow, slow and fast,
+ *            and checks the fastest ship and its time for CHECKDISTANCES distances
+ *            against the first ship with the lowest time in a plain scan
+ * ************************************************************************/
+
+    private static boolean checkFastest(Random random, FleetStore store, int fleetSize)
+    {
+        ShipStorage ss = new ShipStorage(store);
+        Ship[] ships = new Ship[fleetSize];
+        int[] distances = new int[CHECKDISTANCES];
+        TravelResult result;
+        String serialNum;
+        boolean passed = true;
+        double bestTime, time;
+        int best;
+
+        for (int ii = 0; ii < fleetSize; ii++)
+        {
+            serialNum = String.format("%03d.%03d", 100 + random.nextInt(200), 1 + random.nextInt(999));
+
+            if (random.nextInt(4) > 0)
+            {
+                // shallow subs with few cylinders are the fast ones whose times round closest
+                ships[ii] = new Submarine(serialNum, 2000, "steel",
+                                          -random.nextInt(random.nextBoolean() ? 60 : 5001) / 10.0,
+                                          Engine.of(Engine.MINCYL + random.nextInt(random.nextBoolean() ? 4 : 19),
+                                                    Engine.DSL));
+            }
+            else
+            {
+                ships[ii] = new FighterJet(serialNum, 2000, (220 + random.nextInt(2341)) / 100.0, "bombs",
+                                           Engine.of(2 + random.nextInt(19), Engine.DSL));
+            }
+            ss.addShip(ships[ii]);
+        }
+        for (int ii = 0; ii < CHECKDISTANCES; ii++)
+        {
+            distances[ii] = (ii < 5) ? ii : random.nextInt((ii % 2 == 0) ? 200 : 100000);
+        }
+        result = ss.destinationCheck(distances);
+
+        for (int ii = 0; ii < CHECKDISTANCES; ii++)
+        {
+            bestTime = Double.MAX_VALUE;
+            best = -1;
+
+            for (int jj = 0; jj < fleetSize; jj++)
+            {
+                time = originalTravel(ships[jj], distances[ii]);
+
+                if (time < bestTime)
+                {
+                    bestTime = time;
+                    best = jj;
+                }
+            }
+            passed = passed && (result.getShipIndex(ii) == best) && (result.getTravelTime(ii) == bestTime)
+                     && (ss.findFastest(distances[ii]) == best);
+        }
+        return passed;
+    }
+
+
+/***************************************************************************
+ * Submodule: originalTravel
+ * Import: ship (Ship), travelDistance (integer)
+ * Export: travelTime (real)
+ * Assertion: the travel time worked out by the original formula of each kind of ship
+ * ************************************************************************/
+
+    private static double originalTravel(Ship ship, int travelDistance)
+    {
+        double travelTime;
+
+        if (ship instanceof Submarine)
+        {
+            travelTime = ((double)travelDistance / (double)ship.getEngine().getCylinders())
+                         * (1.0 / (10.0 + (((Submarine)ship).getMaxDepth() * -1.0)));
+        }
+        else
+        {
+            travelTime = travelDistance / (((FighterJet)ship).getWingSpan() * ship.getEngine().getCylinders()
+                                           * 150.0);
+        }
+        return Math.round(travelTime * 100.0) / 100.0;
+    }
+
+
+/***************************************************************************
+ * Submodule: loadsNothing
+ * Import: fileName (String)
+ * Export: refused (boolean)
+ * Assertion: loadSnapshot of fileName into an empty storage adds no ships and does not
+ *            run out of memory trying
+ * ************************************************************************/
+
+    private static boolean loadsNothing(String fileName)
+    {
+        ShipStorage ss = new ShipStorage();
+        boolean refused;
+
+        try
+        {
+            refused = (FileManager.loadSnapshot(ss, fileName).getRowsLoaded() == 0) && (ss.getShipCount() == 0);
+        }
+        catch (OutOfMemoryError e)
+        {
+            refused = false;
+        }
+        return refused;
+    }
+
+
+/***************************************************************************
+ * Submodule: opensNot
+ * Import: fileName (String)
+ * Export: refused (boolean)
+ * Assertion: opening fileName as a mapped store fails with an IOException and does not
+ *            run out of memory trying
+ * ************************************************************************/
+
+    private static boolean opensNot(String fileName)
+    {
+        boolean refused = false;
+
+        try
+        {
+            new MappedFleetStore(fileName).close();
+        }
+        catch (IOException e)
+        {
+            refused = true;
+        }
+        catch (RuntimeException | OutOfMemoryError e)
+        {
+            refused = false;
+        }
+        return refused;
+    }
+
+
+/***************************************************************************
+ * Submodule: report
+ * Import: name (String), passed (boolean)
+ * Export: failures (integer)
+ * Assertion: prints ok or FAIL before name and returns 1 for a failure
+ * ************************************************************************/
+
+    private static int report(String name, boolean passed)
+    {
+        System.out.println((passed ? "ok    " : "FAIL  ") + name);
+        return passed ? 0 : 1;
+    }
+
+
+/***************************************************************************
+ * Submodule: appendAddShip
+ * Import: script (StringBuilder), ship (Ship)
+ * Export: none
+ * Assertion: appends the answers, one a line, that make addShip add the ship
+ * ************************************************************************/
+
+    private static void appendAddShip(StringBuilder script, Ship ship)
+    {
+        script.append("1\n").append((ship instanceof Submarine) ? "1\n" : "2\n");
+        script.append(ship.getSerialNum()).append('\n').append(ship.getYear()).append('\n');
+        script.append(ship.getEngine().getCylinders()).append('\n').append(ship.getEngine().getFuel()).append('\n');
+
+        if (ship instanceof Submarine)
+        {
+            script.append(((Submarine)ship).getHull()).append('\n').append(((Submarine)ship).getMaxDepth()).append('\n');
+        }
+        else
+        {
+            script.append(((FighterJet)ship).getWingSpan()).append('\n').append(((FighterJet)ship).getOrdnance());
+            script.append('\n');
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: percentile
+ * Import: nanos (ARRAY OF long), samples (integer), fraction (real)
+ * Export: nanos (long)
+ * Assertion: the nearest-rank percentile of the first samples values, already sorted
+ * ************************************************************************/
+
+    private static long percentile(long[] nanos, int samples, double fraction)
+    {
+        int rank = (int)Math.ceil(fraction * samples);
+
+        return nanos[Math.max(rank, 1) - 1];
+    }
+
+
+/***************************************************************************
+ * Submodule: stressWrite
+ * Import: ss (ShipStorage), ship (Ship), done (long)
+ * Export: none
+ * Assertion: adds ship twice in four writes, upserts it the third and removes its
+ *            serial number the fourth, so removals keep the storage compacting
+ * ************************************************************************/
+
+    private static void stressWrite(ShipStorage ss, Ship ship, long done)
+    {
+        int kind = (int)(done % 4);
+
+        if (kind == 2)
+        {
+            ss.upsert(ship);
+        }
+        else if (kind == 3)
+        {
+            ss.remove(ship.getSerialNum());
+        }
+        else
+        {
+            ss.addShip(ship);
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: timeDuplicates
+ * Import: ss (ShipStorage)
+ * Export: millis (real)
+ * Assertion: median milliseconds of findDuplicates over TIMEDRUNS runs after warming up
+ * ************************************************************************/
+
+    private static double timeDuplicates(ShipStorage ss)
+    {
+        double[] millis = new double[TIMEDRUNS];
+        long start;
+
+        for (int ii = 0; ii < WARMUPRUNS + TIMEDRUNS; ii++)
+        {
+            start = System.nanoTime();
+            sink = sink + ss.findDuplicates().length();
+
+            if (ii >= WARMUPRUNS)
+            {
+                millis[ii - WARMUPRUNS] = (System.nanoTime() - start) / 1.0e6;
+            }
+        }
+        return median(millis);
+    }
+
+
+/***************************************************************************
+ * Submodule: timeFastest
+ * Import: ss (ShipStorage)
+ * Export: millis (real)
+ * Assertion: median milliseconds of a scanning findFastest over TIMEDRUNS runs after warming up
+ * ************************************************************************/
+
+    private static double timeFastest(ShipStorage ss)
+    {
+        double[] millis = new double[TIMEDRUNS];
+        long start;
+
+        for (int ii = 0; ii < WARMUPRUNS + TIMEDRUNS; ii++)
+        {
+            start = System.nanoTime();
+            sink = sink + ss.findFastest(SCANDISTANCE);
+
+            if (ii >= WARMUPRUNS)
+            {
+                millis[ii - WARMUPRUNS] = (System.nanoTime() - start) / 1.0e6;
+            }
+        }
+        return median(millis);
+    }
+
+
+/***************************************************************************
+ * Submodule: timeTopK
+ * Import: ss (ShipStorage), sorted (FleetStore), shipLimit (integer), result (TravelResult)
+ * Export: millis (real)
+ * Assertion: median milliseconds over TIMEDRUNS runs after warming up of fastestShips,
+ *            or of sortFastest on sorted when it is not null, both filling result
+ * ************************************************************************/
+
+    private static double timeTopK(ShipStorage ss, FleetStore sorted, int shipLimit, TravelResult result)
+    {
+        double[] millis = new double[TIMEDRUNS];
+        long start;
+
+        for (int ii = 0; ii < WARMUPRUNS + TIMEDRUNS; ii++)
+        {
+            start = System.nanoTime();
+
+            if (sorted != null)
+            {
+                sortFastest(sorted, shipLimit, result);
+            }
+            else
+            {
+                ss.fastestShips(TOPKDISTANCE, shipLimit, result);
+            }
+            sink = sink + result.getShipIndex(0);
+
+            if (ii >= WARMUPRUNS)
+            {
+                millis[ii - WARMUPRUNS] = (System.nanoTime() - start) / 1.0e6;
+            }
+        }
+        return median(millis);
+    }
+
+
+/***************************************************************************
+ * Submodule: sortFastest
+ * Import: store (FleetStore), shipLimit (integer), result (TravelResult)
+ * Export: none
+ * Assertion: fills result with the shipLimit fastest ships at TOPKDISTANCE the way a
+ *            full sort would, every time is rounded to hundredths so it packs exactly
+ *            above the index into one key, and sorting the keys orders the ships on
+ *            time and then storage order
+ * ************************************************************************/
+
+    private static void sortFastest(FleetStore store, int shipLimit, TravelResult result)
+    {
+        int count = store.getShipCount();
+        long[] keys = new long[count];
+        int shipIndex;
+
+        for (int ii = 0; ii < count; ii++)
+        {
+            keys[ii] = (Math.round(store.calcTravel(ii, TOPKDISTANCE) * 100.0) << 32) | ii;
+        }
+        Arrays.sort(keys);
+        result.reset(Math.min(shipLimit, count));
+
+        for (int ii = 0; ii < result.getCount(); ii++)
+        {
+            shipIndex = (int)keys[ii];
+            result.setResult(ii, shipIndex, store.calcTravel(shipIndex, TOPKDISTANCE));
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: median
+ * Import: millis (ARRAY OF real)
+ * Export: median (real)
+ * ************************************************************************/
+
+    private static double median(double[] millis)
+    {
+        Arrays.sort(millis);
+        return millis[millis.length / 2];
+    }
+
+
+/***************************************************************************
+ * Submodule: nextThreads
+ * Import: threads (integer), processors (integer)
+ * Export: next (integer)
+ * Assertion: double threads, but land on processors itself before going past it
+ * ************************************************************************/
+
+    private static int nextThreads(int threads, int processors)
+    {
+        int next = threads * 2;
+
+        if ((threads < processors) && (next > processors))
+        {
+            next = processors;
+        }
+        return next;
+    }
+
+
+    private static void printRow(String threads, double dupes, double dupesSpeedup, double fastest,
+                                 double fastestSpeedup)
+    {
+        System.out.println(String.format("%7s  %13.2f  %7.2f  %10.2f  %7.2f", threads, dupes, dupesSpeedup,
+                                         fastest, fastestSpeedup));
+    }
+}
@@ -4,19 +4,221 @@
  *  Date last modified: 27 May 2019
  * *********************************************************************/
 
+import java.io.*;
+import java.util.concurrent.*;
+
 public class ShipManager
 {
+    // class constants
+    public static final String STOREOPTION = "-store";
+    public static final String BATCHOPTION = "-batch";
+    public static final String SERVEOPTION = "-serve";
+    public static final String USAGE = "Usage: java ShipManager [-store FILE] [-batch [SCRIPT]] [-serve PORT]";
+    public static final long SHUTDOWNMILLIS = 10000; // longest a stopped server waits for the store to close
+
+
+/***********************************************************************
+ *  Submodule: main
+ *  Import: args (ARRAY OF String)
+ *  Export: none
+ *  Assertion: runs the menu, with "-store FILE" the fleet is kept in FILE and is
+ *             still there the next time the program starts with the same FILE.
+ *             With "-batch" the commands in SCRIPT (or on standard input) run
+ *             instead of the menu, and the program exits with 1 if any failed.
+ *             With "-serve PORT" queries are answered on PORT of this machine
+ *             until the program is stopped, after any batch commands have run,
+ *             and stopping it closes the store before the program ends
+ *  *********************************************************************/
+
     public static void main(String[] args)
     {
+        MappedFleetStore store = null;
+        ShipStorage storage = null;
+        UserInterface ui;
+        QueryServer server;
+        CountDownLatch closed = new CountDownLatch(1);
+        String storeFile = null;
+        String script = null;
+        boolean batch = false;
+        boolean serve = false;
+        int port = 0;
+        int exitStatus = 0;
+        int ii = 0;
+
         try
         {
-            UserInterface ui = new UserInterface();
-            ui.shipMenu();
+            while (ii < args.length)
+            {
+                if ((args[ii].equals(STOREOPTION)) && (ii + 1 < args.length))
+                {
+                    storeFile = args[ii + 1];
+                    ii = ii + 2;
+                }
+                else if (args[ii].equals(BATCHOPTION))
+                {
+                    batch = true;
+                    ii++;
+
+                    if ((ii < args.length) && (!args[ii].startsWith("-")))
+                    {
+                        script = args[ii];
+                        ii++;
+                    }
+                }
+                else if ((args[ii].equals(SERVEOPTION)) && (ii + 1 < args.length))
+                {
+                    serve = true;
+                    port = Integer.parseInt(args[ii + 1]);
+                    ii = ii + 2;
+
+                    if (port < 0)
+                    {
+                        throw new IllegalArgumentException("Invalid port");
+                    }
+                }
+                else
+                {
+                    throw new IllegalArgumentException(USAGE + ".");
+                }
+            }
+
+            if (storeFile != null)
+            {
+                store = new MappedFleetStore(storeFile);
+                storage = new ShipStorage(store);
+            }
+
+            if ((storage == null) && ((batch) || (serve)))
+            {
+                storage = new ShipStorage();
+            }
+
+            if (batch)
+            {
+                if (runBatch(storage, script) > 0)
+                {
+                    exitStatus = 1;
+                }
+            }
+
+            if (serve)
+            {
+                server = new QueryServer(storage, port);
+                stopOnShutdown(server, closed);
+                System.out.println("Serving on " + QueryServer.HOST + ":" + server.getPort());
+                server.serve();
+            }
+            else if (!batch)
+            {
+                if (storage != null)
+                {
+                    ui = new UserInterface(storage);
+                }
+                else
+                {
+                    ui = new UserInterface();
+                }
+                ui.shipMenu();
+            }
         }
         catch (Exception e)
         {
             System.out.println(e.getMessage() + " Sorry!");
+            exitStatus = (((batch) || (serve)) ? 1 : 0);
+        }
+        finally
+        {
+            if (store != null)
+            {
+                try
+                {
+                    if (storage != null)
+                    {
+                        storage.close(); // closes up the places removed ships still take in FILE
+                    }
+                    else
+                    {
+                        store.close();
+                    }
+                }
+                catch (Exception e)
+                {
+                    System.out.println(e.getMessage() + " Sorry!");
+                }
+            }
+            closed.countDown();
+        }
+
+        if (exitStatus != 0)
+        {
+            System.exit(exitStatus);
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: stopOnShutdown
+ *  Import: server (QueryServer), closed (CountDownLatch)
+ *  Export: none
+ *  Assertion: when the program is stopped (Ctrl-C or kill) the server stops and
+ *             the program waits up to SHUTDOWNMILLIS for main to count down
+ *             closed, so the store is closed before the program ends
+ *  *********************************************************************/
+
+    public static void stopOnShutdown(QueryServer server, CountDownLatch closed)
+    {
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            server.stop();
+
+            try
+            {
+                closed.await(SHUTDOWNMILLIS, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                // ending anyway, every removal is already marked in the store
+            }
+        }));
+    }
+
+
+/***********************************************************************
+ *  Submodule: runBatch
+ *  Import: storage (ShipStorage), script (String)
+ *  Export: errorCount (integer)
+ *  Assertion: runs the commands in script, or on standard input when script is
+ *             null, through one reader and one buffered writer to standard output
+ *  *********************************************************************/
+
+    public static int runBatch(ShipStorage storage, String script) throws IOException
+    {
+        BufferedReader in;
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), FileManager.BUFFERSIZE);
+        int errorCount;
+
+        if (script == null)
+        {
+            in = new BufferedReader(new InputStreamReader(System.in), FileManager.BUFFERSIZE);
+        }
+        else
+        {
+            in = new BufferedReader(new FileReader(script), FileManager.BUFFERSIZE);
+        }
+
+        try
+        {
+            errorCount = new CommandRunner(storage).run(in, out);
         }
+        finally
+        {
+            out.flush();
 
+            if (script != null)
+            {
+                in.close();
+            }
+        }
+        return errorCount;
     }
 }
@@ -0,0 +1,406 @@
+/***********************************************************************
+ *  Author: Benjamin Le
+ *  Purpose: Turns one saved line of bytes into a ship without splitting
+ *           it into Strings first
+ *  Date last modified: 27 May 2019
+ * *********************************************************************/
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.function.*;
+
+public class ShipParser
+{
+    // class constants
+    public static final int FIELDS = 7;
+    private static final int MAXINTDIGITS = 9;      // nine digits can never overflow an int
+    private static final long MAXEXACTMANTISSA = 1L << 53;
+    private static final double[] POWERSOFTEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+                                                 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+                                                 1e20, 1e21, 1e22};
+
+
+    // private class fields
+    private int[] fieldStart;
+    private int[] fieldEnd;
+    private byte[] scratch;
+    private Charset charset;
+    private boolean afterCR; // the last line ended in \r, so a \n straight after it is not a new line
+
+
+/***********************************************************************
+ *  Default Constructor
+ *  Import: none
+ *  Export: none
+ *  Assertion: creates a parser with its own reusable field positions
+ *  *********************************************************************/
+
+    public ShipParser()
+    {
+        fieldStart = new int[FIELDS + 1];
+        fieldEnd = new int[FIELDS + 1];
+        scratch = new byte[64];
+        charset = Charset.defaultCharset();
+        afterCR = false;
+    }
+
+
+/***********************************************************************
+ *  Submodule: parseLines
+ *  Import: ships (Consumer), buf (ByteBuffer), start (integer), end (integer),
+ *          lastBlock (boolean), report (LoadReport)
+ *  Export: lineStart (integer)
+ *  Assertion: splits bytes start to end of buf into lines the way BufferedReader.readLine
+ *             does (\n, \r or \r\n) and hands the ship on each to ships, such as the
+ *             addShip of a storage, returns where the unfinished last line starts unless
+ *             this is the last block
+ *  *********************************************************************/
+
+    public int parseLines(Consumer<Ship> ships, ByteBuffer buf, int start, int end, boolean lastBlock,
+                          LoadReport report)
+    {
+        int lineStart = start;
+        byte next;
+
+        for (int ii = start; ii < end; ii++)
+        {
+            next = buf.get(ii);
+
+            if ((next == '\n') && (afterCR) && (ii == lineStart))
+            {
+                lineStart = ii + 1;
+            }
+            else if ((next == '\n') || (next == '\r'))
+            {
+                storeLine(ships, buf, lineStart, ii, report);
+                lineStart = ii + 1;
+            }
+            afterCR = (next == '\r');
+        }
+
+        if ((lastBlock) && (lineStart < end))
+        {
+            storeLine(ships, buf, lineStart, end, report); // last line had no line end
+            lineStart = end;
+        }
+        return lineStart;
+    }
+
+
+/***********************************************************************
+ *  Submodule: parseLine
+ *  Import: buf (ByteBuffer), start (integer), end (integer)
+ *  Export: ship (Ship)
+ *  Assertion: builds the ship saved in bytes start to end (exclusive) of buf, fails
+ *             on exactly the lines FileManager.processLine rejects
+ *  *********************************************************************/
+
+    public Ship parseLine(ByteBuffer buf, int start, int end)
+    {
+        Ship ship;
+        byte shipChoice;
+        String serialNum;
+        int year;
+        int cylinders;
+        String fuel;
+        Engine engine;
+
+        if (splitFields(buf, start, end) != FIELDS)
+        {
+            throw new IllegalArgumentException("Invalid");
+        }
+
+        if (fieldEnd[0] - fieldStart[0] != 1)
+        {
+            throw new IllegalArgumentException("Invalid 1");
+        }
+
+        shipChoice = buf.get(fieldStart[0]);
+        serialNum = toText(buf, 1);
+        year = parseInt(buf, 2);
+        cylinders = parseInt(buf, 3);
+        fuel = toKnownText(buf, 4, Engine.BAT, Engine.DSL, Engine.BIO);
+
+        engine = Engine.of(cylinders, fuel);
+
+        switch (shipChoice)
+        {
+            case 'S': case 's':
+                ship = new Submarine(serialNum, year, toKnownText(buf, 5, Submarine.STL, Submarine.ALY, Submarine.TIT),
+                                     parseDouble(buf, 6), engine);
+                break;
+
+            case 'F': case 'f':
+                ship = new FighterJet(serialNum, year, parseDouble(buf, 5), toText(buf, 6), engine);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Invalid object");
+        }
+        return ship;
+    }
+
+
+// PRIVATE SUBMODULES
+/***********************************************************************
+ *  Submodule: storeLine
+ *  Import: ships (Consumer), buf (ByteBuffer), start (integer), end (integer),
+ *          report (LoadReport)
+ *  Export: none
+ *  Assertion: hands ships the ship in bytes start to end of buf, or records why it is invalid
+ *  *********************************************************************/
+
+    private void storeLine(Consumer<Ship> ships, ByteBuffer buf, int start, int end, LoadReport report)
+    {
+        try
+        {
+            ships.accept(parseLine(buf, start, end));
+            report.addLoaded();
+        }
+        catch (IllegalArgumentException e)
+        {
+            report.addError(report.getRowsLoaded() + report.getRowsRejected() + 1, e.getMessage());
+        }
+    }
+
+
+/***********************************************************************
+ *  Submodule: splitFields
+ *  Import: buf (ByteBuffer), start (integer), end (integer)
+ *  Export: fieldCount (integer)
+ *  Assertion: finds the comma separated fields of the line, dropping trailing
+ *             empty fields the same way String.split does
+ *  *********************************************************************/
+
+    private int splitFields(ByteBuffer buf, int start, int end)
+    {
+        int fieldCount = 0;
+        int lastFilled = -1;
+        int begin = start;
+
+        for (int ii = start; ii <= end; ii++)
+        {
+            if ((ii == end) || (buf.get(ii) == ','))
+            {
+                // only the first few positions are kept, later fields just need to be seen as empty or not
+                if (fieldCount < fieldStart.length)
+                {
+                    fieldStart[fieldCount] = begin;
+                    fieldEnd[fieldCount] = ii;
+                }
+
+                if (ii > begin)
+                {
+                    lastFilled = fieldCount;
+                }
+                fieldCount = fieldCount + 1;
+                begin = ii + 1;
+            }
+        }
+
+        if (fieldCount > 1)
+        {
+            fieldCount = lastFilled + 1; // a line without a comma stays one field even when empty
+        }
+        return fieldCount;
+    }
+
+
+/***********************************************************************
+ *  Submodule: parseInt
+ *  Import: buf (ByteBuffer), field (integer)
+ *  Export: num (integer)
+ *  Assertion: reads a plain decimal integer straight from the bytes, anything
+ *             unusual is handed to Integer.parseInt so the result is identical
+ *  *********************************************************************/
+
+    private int parseInt(ByteBuffer buf, int field)
+    {
+        int ii = fieldStart[field];
+        int finish = fieldEnd[field];
+        boolean negative = false;
+        boolean plain;
+        int num = 0;
+
+        if ((ii < finish) && ((buf.get(ii) == '-') || (buf.get(ii) == '+')))
+        {
+            negative = (buf.get(ii) == '-');
+            ii = ii + 1;
+        }
+
+        plain = (ii < finish) && (finish - ii <= MAXINTDIGITS);
+
+        while ((plain) && (ii < finish))
+        {
+            byte digit = buf.get(ii);
+
+            plain = (digit >= '0') && (digit <= '9');
+            num = (num * 10) + (digit - '0');
+            ii = ii + 1;
+        }
+
+        if (!plain)
+        {
+            num = Integer.parseInt(toText(buf, field)); // throws NumberFormatException on bad input
+        }
+        else if (negative)
+        {
+            num = -num;
+        }
+        return num;
+    }
+
+
+/***********************************************************************
+ *  Submodule: parseDouble
+ *  Import: buf (ByteBuffer), field (integer)
+ *  Export: num (real)
+ *  Assertion: reads a plain decimal straight from the bytes when it can be done
+ *             exactly, anything else is handed to Double.parseDouble
+ *  *********************************************************************/
+
+    private double parseDouble(ByteBuffer buf, int field)
+    {
+        int ii = fieldStart[field];
+        int finish = fieldEnd[field];
+        boolean negative = false;
+        boolean plain = true;
+        boolean seenPoint = false;
+        int digits = 0;
+        int decimals = 0;
+        long mantissa = 0;
+        double num;
+
+        if ((ii < finish) && ((buf.get(ii) == '-') || (buf.get(ii) == '+')))
+        {
+            negative = (buf.get(ii) == '-');
+            ii = ii + 1;
+        }
+
+        while ((plain) && (ii < finish))
+        {
+            byte digit = buf.get(ii);
+
+            if ((digit >= '0') && (digit <= '9'))
+            {
+                mantissa = (mantissa * 10) + (digit - '0');
+                digits = digits + 1;
+                plain = (mantissa < MAXEXACTMANTISSA);
+
+                if (seenPoint)
+                {
+                    decimals = decimals + 1;
+                }
+            }
+            else if ((digit == '.') && (!seenPoint))
+            {
+                seenPoint = true;
+            }
+            else
+            {
+                plain = false;
+            }
+            ii = ii + 1;
+        }
+
+        // a mantissa below 2^53 and a power of ten up to 10^22 are both exact doubles,
+        // so a single division rounds the same way Double.parseDouble does
+        if ((plain) && (digits > 0) && (decimals < POWERSOFTEN.length))
+        {
+            num = mantissa / POWERSOFTEN[decimals];
+
+            if (negative)
+            {
+                num = -num;
+            }
+        }
+        else
+        {
+            num = Double.parseDouble(toText(buf, field));
+        }
+        return num;
+    }
+
+
+/***********************************************************************
+ *  Submodule: toKnownText
+ *  Import: buf (ByteBuffer), field (integer), one, two, three (String)
+ *  Export: text (String)
+ *  Assertion: returns the matching lower case constant without making a new
+ *             String when the field is one of the three words in any case
+ *  *********************************************************************/
+
+    private String toKnownText(ByteBuffer buf, int field, String one, String two, String three)
+    {
+        String text;
+
+        if (matches(buf, field, one))
+        {
+            text = one;
+        }
+        else if (matches(buf, field, two))
+        {
+            text = two;
+        }
+        else if (matches(buf, field, three))
+        {
+            text = three;
+        }
+        else
+        {
+            text = toText(buf, field);
+        }
+        return text;
+    }
+
+
+/***********************************************************************
+ *  Submodule: matches
+ *  Import: buf (ByteBuffer), field (integer), word (String)
+ *  Export: same (boolean)
+ *  Assertion: field equals the lower case ASCII word, ignoring case
+ *  *********************************************************************/
+
+    private boolean matches(ByteBuffer buf, int field, String word)
+    {
+        int begin = fieldStart[field];
+        boolean same = (fieldEnd[field] - begin == word.length());
+
+        for (int ii = 0; (same) && (ii < word.length()); ii++)
+        {
+            int letter = buf.get(begin + ii);
+
+            if ((letter >= 'A') && (letter <= 'Z'))
+            {
+                letter = letter + ('a' - 'A');
+            }
+            same = (letter == word.charAt(ii));
+        }
+        return same;
+    }
+
+
+/***********************************************************************
+ *  Submodule: toText
+ *  Import: buf (ByteBuffer), field (integer)
+ *  Export: text (String)
+ *  Assertion: decodes the field with the same charset a FileReader would use
+ *  *********************************************************************/
+
+    private String toText(ByteBuffer buf, int field)
+    {
+        int begin = fieldStart[field];
+        int length = fieldEnd[field] - begin;
+
+        if (length > scratch.length)
+        {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+
+        for (int ii = 0; ii < length; ii++)
+        {
+            scratch[ii] = buf.get(begin + ii);
+        }
+        return new String(scratch, 0, length, charset);
+    }
+}
@@ -4,58 +4,273 @@
  * Date last modified: 27 May 2019
  * ************************************************************************/
 
+import java.io.*;
 import java.util.*;
 
 public class ShipStorage
 {
-    // class constants
-    public static final int MAXSHIP = 30;
-   
- 
-    // private class fields
-    private Ship[] shipArray;
-    private int shipCount;
-   
- 
+    // private class fields, the writers take turns on the storage lock, readers take the
+    // version once and never lock, a removal or compaction publishes a new version and
+    // leaves the one readers are on as it was. Indexes are places in the version, a
+    // removed ship keeps its place until a compaction closes the gaps
+    private volatile FleetVersion version;
+    private boolean readOnly;             // set on storages made by snapshot
+    private volatile FleetScan fleetScan; // runs the scans over the whole fleet
+
+
 /***************************************************************************
  * Default Constructor
  * Import: none
  * Export: none
- * Assertion: creates shipArray made of Ship with a size of 30 and initalises shipCount as 0
+ * Assertion: creates an empty storage with room for one chunk of ships
  * ************************************************************************/
-    
+
     public ShipStorage()
     {
-        shipArray = new Ship[MAXSHIP];
-        shipCount = 0;
+        this(FleetStore.CHUNKSIZE);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: capacityHint (integer)
+ * Export: address of new ShipStorage
+ * Assertion: creates an empty storage pre-sized to hold capacityHint ships, fails if negative
+ * ************************************************************************/
+
+    public ShipStorage(int capacityHint)
+    {
+        this(new ObjectFleetStore(capacityHint));
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: inStore (FleetStore)
+ * Export: address of new ShipStorage
+ * Assertion: creates a storage that keeps its ships in inStore, any ships already
+ *            in inStore become the first ships of the storage
+ * ************************************************************************/
+
+    public ShipStorage(FleetStore inStore)
+    {
+        version = new FleetVersion(inStore);
+        fleetScan = new FleetScan();
     }
-      
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: source (ShipStorage), frozen (FleetVersion)
+ * Export: address of new ShipStorage
+ * Assertion: creates a read-only storage over a snapshot version of the fleet of source
+ * ************************************************************************/
+
+    private ShipStorage(ShipStorage source, FleetVersion frozen)
+    {
+        version = frozen;
+        fleetScan = source.fleetScan;
+        readOnly = true;
+    }
+
+
+/***************************************************************************
+ * Submodule: ensureCapacity
+ * Import: capacity (integer)
+ * Export: none
+ * Assertion: makes room for at least capacity places, existing ships are never copied
+ * ************************************************************************/
+
+    public synchronized void ensureCapacity(int capacity)
+    {
+        checkWritable();
+        version.ensureCapacity(capacity);
+    }
+
 
 /***************************************************************************
  * Submodule: addShip
  * Import: addedShip (Ship)
  * Export: none
- * Assertion: adds a copy of the ship to the array unless array full or added ship is null
+ * Assertion: adds a copy of the ship to the end of the storage unless added ship is null,
+ *            threads adding at the same time take turns
  * ************************************************************************/
 
-    public void addShip(Ship addedShip)
-    { 
-        if (shipCount >= MAXSHIP)
+    public synchronized void addShip(Ship addedShip)
+    {
+        checkWritable();
+
+        if (addedShip == null)
+        {
+            throw new IllegalArgumentException("Added ship is null");
+        }
+        else if (version.getPlaceCount() == Integer.MAX_VALUE)
         {
-            throw new IllegalArgumentException("Array is full");
+            throw new IllegalArgumentException("Storage is full");
         }
-        else if (addedShip == null)
+        else
+        {
+            version.addShip(addedShip); // readers see the ship once it is counted
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: adoptShips
+ * Import: ships (List of Ship)
+ * Export: none
+ * Assertion: adds every ship in ships to the end of the storage in order, in one turn of
+ *            the writers, the ships are kept rather than copied, so the caller must not
+ *            keep or change them, and none are added if any is null or they would not
+ *            all fit
+ * ************************************************************************/
+
+    public synchronized void adoptShips(List<Ship> ships)
+    {
+        FleetVersion fleet = version;
+
+        checkWritable();
+
+        if (ships.contains(null))
         {
             throw new IllegalArgumentException("Added ship is null");
         }
-        else  
+        else if ((long)fleet.getPlaceCount() + ships.size() > Integer.MAX_VALUE)
         {
-            shipArray[shipCount] = addedShip.clone();
-            shipCount = shipCount + 1;
+            throw new IllegalArgumentException("Storage is full");
+        }
+        fleet.ensureCapacity(fleet.getPlaceCount() + ships.size());
+
+        for (Ship ship : ships)
+        {
+            fleet.adoptShip(ship);
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: upsert
+ * Import: ship (Ship)
+ * Export: replaced (integer)
+ * Assertion: adds a copy of ship to the end and then removes every other ship with its
+ *            serial number, so it is the one ship with that serial number afterwards and
+ *            a reader in between finds one or the other, exports how many it replaced
+ * ************************************************************************/
+
+    public synchronized int upsert(Ship ship)
+    {
+        int below;
+
+        checkWritable();
+
+        if (ship == null)
+        {
+            throw new IllegalArgumentException("Added ship is null");
+        }
+        below = version.getPlaceCount();
+        addShip(ship);
+        return removeSerial(ship.getSerialKey(), below);
+    }
+
+
+/***************************************************************************
+ * Submodule: remove
+ * Import: serialNum (String)
+ * Export: removed (integer)
+ * Assertion: removes every ship with the serial number, in constant expected time, no
+ *            other ship moves until a compaction, exports how many went
+ * ************************************************************************/
+
+    public synchronized int remove(String serialNum)
+    {
+        int key = Ship.packSerial(serialNum);
+        int removed = 0;
+
+        checkWritable();
+
+        if (key >= 0)
+        {
+            removed = removeSerial(key, version.getPlaceCount());
+        }
+        return removed;
+    }
+
+
+/***************************************************************************
+ * Submodule: compact
+ * Import: none
+ * Export: none
+ * Assertion: closes up the places of removed ships in a new version, readers already on
+ *            the old one finish on it, it is run by the writer whenever a removal leaves
+ *            the fleet sparse, so churn never grows the storage
+ * ************************************************************************/
+
+    public synchronized void compact()
+    {
+        checkWritable();
+
+        if (version.getRemovedCount() > 0)
+        {
+            version = version.compact();
         }
     }
 
 
+/***************************************************************************
+ * Submodule: close
+ * Import: none
+ * Export: none
+ * Assertion: closes up removed ships and then the store, so a store kept in a file is
+ *            written to the disk without them, the storage cannot be changed afterwards
+ * ************************************************************************/
+
+    public synchronized void close() throws IOException
+    {
+        compact();
+        readOnly = true;
+        version.getStore().close();
+    }
+
+
+/***************************************************************************
+ * Submodule: checkWritable
+ * Import: none
+ * Export: none
+ * Assertion: fails if the storage is a read-only snapshot
+ * ************************************************************************/
+
+    private void checkWritable()
+    {
+        if (readOnly)
+        {
+            throw new IllegalArgumentException("Storage is a read-only snapshot");
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: removeSerial
+ * Import: serialKey (integer), below (integer)
+ * Export: removed (integer)
+ * Assertion: publishes a version without the ships with the serial key in places below
+ *            below, compacted first when the removal left it sparse
+ * ************************************************************************/
+
+    private int removeSerial(int serialKey, int below)
+    {
+        FleetVersion fleet = version;
+        FleetVersion next = fleet.removeSerial(serialKey, below);
+        int removed = next.getRemovedCount() - fleet.getRemovedCount();
+
+        if ((next != fleet) && (next.isSparse()))
+        {
+            next = next.compact();
+        }
+        version = next;
+        return removed;
+    }
+
+
 /***************************************************************************
  * Submodule: destinationCheck
  * Import: travelDistance (integer)
@@ -65,57 +280,352 @@ public class ShipStorage
 
     public String destinationCheck(int travelDistance)
     {
-        double fastestTime = Double.MAX_VALUE;
-        int shipIndex = 0;
-        Ship fastestShip = null; 
-        double shipTime;   
+        double fastestTime;
+        int shipIndex;
+        Ship fastestShip;
         String outStr = "";
+        FleetVersion fleet = version;
+        int count = fleet.getPlaceCount();
 
-        if (shipCount == 0)
+        if (count == fleet.getRemovedCount())
         {
             outStr = "There are no ships in the ship storage";
         }
         else
         {
-            for (int ii = 0; ii < shipCount; ii++)          
+            shipIndex = findFastest(fleet, travelDistance, count);
+            fastestShip = fleet.getStore().getShip(shipIndex);
+            fastestTime = fastestShip.calcTravel(travelDistance);
+            outStr = fastestShip.toString() + " with a travel time of " + fastestTime + " hours.";
+        }
+        return outStr;
+    }
+
+
+/***************************************************************************
+ * Submodule: destinationCheck
+ * Import: travelDistances (ARRAY OF integer)
+ * Export: result (TravelResult)
+ * Assertion: fastest ship index and travel time for every distance, without formatting any ships
+ * ************************************************************************/
+
+    public TravelResult destinationCheck(int[] travelDistances)
+    {
+        TravelResult result = new TravelResult(travelDistances.length);
+
+        destinationCheck(travelDistances, result);
+        return result;
+    }
+
+
+/***************************************************************************
+ * Submodule: destinationCheck
+ * Import: travelDistances (ARRAY OF integer), result (TravelResult)
+ * Export: none
+ * Assertion: fills result with the fastest ship index and travel time for every distance,
+ *            NOSHIP and NaN when the storage is empty, the indexes are only good for
+ *            getShip until the next removal, so callers that need the ships use a snapshot
+ * ************************************************************************/
+
+    public void destinationCheck(int[] travelDistances, TravelResult result)
+    {
+        int shipIndex;
+        FleetVersion fleet = version;  // every distance is answered for the same ships
+        int count = fleet.getPlaceCount();
+
+        result.reset(travelDistances.length);
+
+        for (int ii = 0; ii < travelDistances.length; ii++)
+        {
+            if (count == fleet.getRemovedCount())
+            {
+                result.setResult(ii, TravelResult.NOSHIP, Double.NaN);
+            }
+            else
+            {
+                shipIndex = findFastest(fleet, travelDistances[ii], count);
+                result.setResult(ii, shipIndex, fleet.getStore().calcTravel(shipIndex, travelDistances[ii]));
+            }
+        }
+    }
+
+
+/***************************************************************************
+ * Submodule: fastestShips
+ * Import: travelDistance (integer), shipLimit (integer)
+ * Export: result (TravelResult)
+ * Assertion: up to shipLimit ships with the lowest travel times, fastest first
+ * ************************************************************************/
+
+    public TravelResult fastestShips(int travelDistance, int shipLimit)
+    {
+        TravelResult result = new TravelResult(Math.min(Math.max(shipLimit, 0), getShipCount()));
+
+        fastestShips(travelDistance, shipLimit, result);
+        return result;
+    }
+
+
+/***************************************************************************
+ * Submodule: fastestShips
+ * Import: travelDistance (integer), shipLimit (integer), result (TravelResult)
+ * Export: none
+ * Assertion: fills result with up to shipLimit ships with the lowest travel times, fastest
+ *            first and ties in storage order, the first entry matches destinationCheck
+ * ************************************************************************/
+
+    public void fastestShips(int travelDistance, int shipLimit, TravelResult result)
+    {
+        int heapSize = 0;
+        int[] heapIndex;
+        double[] heapTime;
+        double shipTime;
+        FleetVersion fleet = version;
+        FleetStore store = fleet.getStore();
+        int count = fleet.getPlaceCount();
+
+        if (shipLimit < 1)
+        {
+            throw new IllegalArgumentException("Invalid number of ships");
+        }
+
+        // max-heap on (time, index) holding the best ships seen so far, the worst of them on top
+        heapIndex = new int[Math.min(shipLimit, count - fleet.getRemovedCount())];
+        heapTime = new double[heapIndex.length];
+
+        for (int ii = 0; ii < count; ii++)
+        {
+            if (!fleet.isRemoved(ii))
             {
-                shipTime = shipArray[ii].calcTravel(travelDistance);
-                
-                if (shipTime < fastestTime)
+                shipTime = store.calcTravel(ii, travelDistance);
+
+                if (heapSize < heapIndex.length)
+                {
+                    heapIndex[heapSize] = ii;
+                    heapTime[heapSize] = shipTime;
+                    heapSize = heapSize + 1;
+                    siftUp(heapIndex, heapTime, heapSize - 1);
+                }
+                else if (shipTime < heapTime[0])
                 {
-                    fastestShip = shipArray[ii];
-                    fastestTime = shipTime;
+                    // ii is larger than any index in the heap, so an equal time never displaces the top
+                    heapIndex[0] = ii;
+                    heapTime[0] = shipTime;
+                    siftDown(heapIndex, heapTime, heapSize);
                 }
             }
-            outStr = fastestShip.toString() + " with a travel time of " + fastestTime + " hours.";
         }
-        return outStr;
+
+        result.reset(heapSize);
+
+        // taking the worst ship off the top each time fills the result from the back
+        while (heapSize > 0)
+        {
+            heapSize = heapSize - 1;
+            result.setResult(heapSize, heapIndex[0], heapTime[0]);
+            heapIndex[0] = heapIndex[heapSize];
+            heapTime[0] = heapTime[heapSize];
+            siftDown(heapIndex, heapTime, heapSize);
+        }
     }
 
+
+/***************************************************************************
+ * Submodule: findFastest
+ * Import: travelDistance (integer)
+ * Export: shipIndex (integer)
+ * Assertion: index of the first stored ship with the lowest rounded travel time,
+ *            or -1 when the storage is empty
+ * ************************************************************************/
+
+    public int findFastest(int travelDistance)
+    {
+        FleetVersion fleet = version;
+
+        return findFastest(fleet, travelDistance, fleet.getPlaceCount());
+    }
+
+
+/***************************************************************************
+ * Submodule: findFastest
+ * Import: fleet (FleetVersion), travelDistance (integer), count (integer)
+ * Export: shipIndex (integer)
+ * Assertion: index of the fastest ship in the first count places of fleet, or -1 when
+ *            none of them holds a ship that is not removed
+ * ************************************************************************/
+
+    private int findFastest(FleetVersion fleet, int travelDistance, int count)
+    {
+        int shipIndex = TravelResult.NOSHIP;
+
+        if ((count > fleet.getRemovedCount()) && (travelDistance < 0))
+        {
+            shipIndex = fleetScan.fastest(fleet, travelDistance, count); // times shrink with speed only for positive distances
+        }
+        else if (count > fleet.getRemovedCount())
+        {
+            shipIndex = fleet.findFastest(travelDistance, count);
+        }
+        return shipIndex;
+    }
+
+
+/***************************************************************************
+ * Submodule: isSlower
+ * Import: indexOne (integer), timeOne (real), indexTwo (integer), timeTwo (real)
+ * Export: slower (boolean)
+ * Assertion: the first ship ranks behind the second, on time and then on storage order
+ * ************************************************************************/
+
+    private static boolean isSlower(int indexOne, double timeOne, int indexTwo, double timeTwo)
+    {
+        return ((timeOne > timeTwo) || ((timeOne == timeTwo) && (indexOne > indexTwo)));
+    }
+
+
+/***************************************************************************
+ * Submodule: siftUp
+ * Import: heapIndex (ARRAY OF integer), heapTime (ARRAY OF real), position (integer)
+ * Export: none
+ * Assertion: moves the entry at position up until its parent ranks behind it
+ * ************************************************************************/
+
+    private static void siftUp(int[] heapIndex, double[] heapTime, int position)
+    {
+        int index = heapIndex[position];
+        double time = heapTime[position];
+        int parent;
+
+        while ((position > 0) && (isSlower(index, time, heapIndex[(position - 1) >>> 1], heapTime[(position - 1) >>> 1])))
+        {
+            parent = (position - 1) >>> 1;
+            heapIndex[position] = heapIndex[parent];
+            heapTime[position] = heapTime[parent];
+            position = parent;
+        }
+        heapIndex[position] = index;
+        heapTime[position] = time;
+    }
+
+
+/***************************************************************************
+ * Submodule: siftDown
+ * Import: heapIndex (ARRAY OF integer), heapTime (ARRAY OF real), heapSize (integer)
+ * Export: none
+ * Assertion: moves the top entry down until no child ranks behind it
+ * ************************************************************************/
+
+    private static void siftDown(int[] heapIndex, double[] heapTime, int heapSize)
+    {
+        int index;
+        double time;
+        int position = 0;
+        int child;
+        boolean placed = false;
+
+        if (heapSize > 0)
+        {
+            index = heapIndex[0];
+            time = heapTime[0];
+            child = 1;
+
+            while ((!placed) && (child < heapSize))
+            {
+                if ((child + 1 < heapSize) && (isSlower(heapIndex[child + 1], heapTime[child + 1], heapIndex[child], heapTime[child])))
+                {
+                    child = child + 1;
+                }
+
+                if (isSlower(heapIndex[child], heapTime[child], index, time))
+                {
+                    heapIndex[position] = heapIndex[child];
+                    heapTime[position] = heapTime[child];
+                    position = child;
+                    child = (2 * position) + 1;
+                }
+                else
+                {
+                    placed = true;
+                }
+            }
+            heapIndex[position] = index;
+            heapTime[position] = time;
+        }
+    }
+
+
 /***************************************************************************
  * Submodule: findDuplicates
  * Import: none
  * Export: dupShip (String)
- * Assertion: loops through shipArray and outputs all the ships that are the same
+ * Assertion: outputs every group of ships that are the same, once per group
  * ************************************************************************/
 
     public String findDuplicates()
     {
-        String dupShip = "";
-    
-        for (int ii = 0; ii < shipCount; ii++)
+        StringBuilder dupShip = new StringBuilder();
+
+        try
+        {
+            findDuplicates(dupShip);
+        }
+        catch (IOException e)
+        {
+            // a StringBuilder never throws
+        }
+        return dupShip.toString();
+    }
+
+
+/***************************************************************************
+ * Submodule: findDuplicates
+ * Import: out (Appendable)
+ * Export: groupCount (integer)
+ * Assertion: groups equal ships by hash (on the fleet scan pool for a large fleet), then
+ *            writes each group that has more than one ship to out in order of first appearance
+ * ************************************************************************/
+
+    public int findDuplicates(Appendable out) throws IOException
+    {
+        return findDuplicates(out, null);
+    }
+
+
+/***************************************************************************
+ * Submodule: findDuplicates
+ * Import: out (Appendable), linePrefix (String)
+ * Export: groupCount (integer)
+ * Assertion: the same groups, but each is written as linePrefix, the size of the group,
+ *            a tab and its first ship in file format, one group a line for other programs
+ *            to read, a null linePrefix writes the readable lines instead
+ * ************************************************************************/
+
+    public int findDuplicates(Appendable out, String linePrefix) throws IOException
+    {
+        FleetVersion fleet = version;
+        FleetStore store = fleet.getStore();
+        int shipTotal = fleet.getPlaceCount(); // ships added while writing are left for the next call
+        List<int[]> groups = fleetScan.duplicates(fleet, shipTotal);
+        StringBuilder row = new StringBuilder();
+
+        // each group is its first index and how many ships are in it
+        for (int[] group : groups)
         {
-            for (int jj = ii + 1; jj < shipCount; jj++)
+            if (linePrefix == null)
             {
-                if (shipArray[ii].equals(shipArray[jj]))
-                {
-                    dupShip += shipArray[ii].toString() + "\n";
-                }
+                out.append(store.getShip(group[0]).toString());
+                out.append(" Found ").append(Integer.toString(group[1])).append(" times.\n");
+            }
+            else
+            {
+                row.setLength(0);
+                store.getShip(group[0]).appendFileString(row);
+                out.append(linePrefix).append(Integer.toString(group[1])).append('\t').append(row).append('\n');
             }
         }
-        return dupShip;
+        return groups.size();
     }
-         
+
 
 /***************************************************************************
  * Submodule: viewShips
@@ -126,33 +636,275 @@ public class ShipStorage
 
     public String viewShips()
     {
-        String shipString = "";
-        int ii;
+        StringBuilder shipString = new StringBuilder();
+
+        try
+        {
+            viewShips(shipString, 0, Integer.MAX_VALUE);
+        }
+        catch (IOException e)
+        {
+            // a StringBuilder never throws
+        }
+        return shipString.toString();
+    }
+
+
+/***************************************************************************
+ * Submodule: viewShips
+ * Import: out (Appendable), offset (integer), limit (integer)
+ * Export: placesCovered (integer)
+ * Assertion: writes the details of the ships in up to limit places starting at offset to
+ *            out, one ship at a time and skipping removed ones, so a page of a large fleet
+ *            needs no more memory than a ship, exports how many places it went through
+ * ************************************************************************/
+
+    public int viewShips(Appendable out, int offset, int limit) throws IOException
+    {
+        FleetVersion fleet = version;
+        int count = fleet.getPlaceCount(); // ships added while writing are left for the next page
+        int end;
+
+        if ((offset < 0) || (limit < 0))
+        {
+            throw new IllegalArgumentException("Invalid page");
+        }
+        end = (int)Math.min((long)offset + limit, count);
+
+        for (int ii = offset; ii < end; ii++)
+        {
+            if (!fleet.isRemoved(ii))
+            {
+                out.append(fleet.getStore().getShip(ii).toString()).append('\n');
+            }
+        }
+        return Math.max(end - offset, 0);
+    }
+
+
+/***************************************************************************
+ * Submodule: findSerial
+ * Import: serialNum (String)
+ * Export: shipIndex (integer)
+ * Assertion: index of the first stored ship with the serial number, NOSHIP when there
+ *            is none or the serial number is not valid, found in constant expected time
+ * ************************************************************************/
+
+    public int findSerial(String serialNum)
+    {
+        FleetVersion fleet = version;
+        int count = fleet.getPlaceCount(); // read first, so every entry below it is in the tables
+        int key = Ship.packSerial(serialNum);
+        int shipIndex = TravelResult.NOSHIP;
+
+        if (key >= 0)
+        {
+            shipIndex = fleet.firstWithSerial(key, count);
+        }
+        return shipIndex;
+    }
+
+
+/***************************************************************************
+ * Submodule: nextWithSerial
+ * Import: index (integer)
+ * Export: shipIndex (integer)
+ * Assertion: index of the next stored ship with the same serial number as the ship at
+ *            index, NOSHIP when it is the last one
+ * ************************************************************************/
+
+    public int nextWithSerial(int index)
+    {
+        FleetVersion fleet = version;
+        int count = fleet.getPlaceCount();
 
-        for (ii = 0; ii < shipCount; ii++)
+        if ((index < 0) || (index >= count))
         {
-            shipString += shipArray[ii].toString()+"\n";
+            throw new IllegalArgumentException("Invalid ship index " + index);
         }
-        return shipString;        
+
+        // a ship linked on after count was read is left for the next call
+        return fleet.nextWithSerial(index, count);
+    }
+
+
+/***************************************************************************
+ * Submodule: getBySerial
+ * Import: serialNum (String)
+ * Export: ship (Ship)
+ * Assertion: a copy of the first stored ship with the serial number, null when there is
+ *            none, in constant expected time
+ * ************************************************************************/
+
+    public Ship getBySerial(String serialNum)
+    {
+        FleetVersion fleet = version;
+        int count = fleet.getPlaceCount();
+        int key = Ship.packSerial(serialNum);
+        int shipIndex = TravelResult.NOSHIP;
+        Ship ship = null;
+
+        if (key >= 0)
+        {
+            shipIndex = fleet.firstWithSerial(key, count);
+        }
+
+        if (shipIndex != TravelResult.NOSHIP)
+        {
+            ship = fleet.getStore().copyShip(shipIndex);
+        }
+        return ship;
     }
 
 
 // ACCESSORS
+/***************************************************************************
+ * Submodule: getShipArray
+ * Import: none
+ * Export: shipCopy (ARRAY OF Ship)
+ * Assertion: copies of every stored ship that is not removed, changing them does not
+ *            change the storage
+ * ************************************************************************/
+
     public Ship[] getShipArray()
     {
-        Ship[] shipCopy = new Ship[shipArray.length];
-        
-        for (int ii = 0; ii < shipArray.length; ii++)
+        FleetVersion fleet = version;
+        int count = fleet.getPlaceCount();
+        Ship[] shipCopy = new Ship[count - fleet.getRemovedCount()];
+        int copied = 0;
+
+        for (int ii = 0; ii < count; ii++)
         {
-            shipCopy[ii] = shipArray[ii];     
+            if (!fleet.isRemoved(ii))
+            {
+                shipCopy[copied] = fleet.getStore().copyShip(ii);
+                copied = copied + 1;
+            }
         }
         return shipCopy;
     }
 
 
+/***************************************************************************
+ * Submodule: getShip
+ * Import: index (integer)
+ * Export: ship (Ship)
+ * Assertion: a copy of the ship at a valid index that is not removed, changing it does
+ *            not change the storage
+ * ************************************************************************/
+
+    public Ship getShip(int index)
+    {
+        FleetVersion fleet = version;
+
+        if ((index < 0) || (index >= fleet.getPlaceCount()))
+        {
+            throw new IllegalArgumentException("Invalid ship index " + index);
+        }
+        else if (fleet.isRemoved(index))
+        {
+            throw new IllegalArgumentException("Ship at index " + index + " was removed");
+        }
+        return fleet.getStore().copyShip(index);
+    }
+
+
+/***************************************************************************
+ * Submodule: getFleetVersion
+ * Import: none
+ * Export: fleet (FleetVersion)
+ * Assertion: the version readers see right now, which never changes for a snapshot,
+ *            its store hands out the stored ships themselves for saves and answers
+ *            to read without copying, they must not be changed
+ * ************************************************************************/
+
+    public FleetVersion getFleetVersion()
+    {
+        return version;
+    }
+
+
+/***************************************************************************
+ * Submodule: getShipCount
+ * Import: none
+ * Export: count (integer)
+ * Assertion: number of ships stored, removed ships are not counted
+ * ************************************************************************/
+
     public int getShipCount()
     {
-        return shipCount;
+        return version.getShipCount();
+    }
+
+
+/***************************************************************************
+ * Submodule: getPlaceCount
+ * Import: none
+ * Export: count (integer)
+ * Assertion: number of places in use, removed ships included, every index below it is
+ *            either a ship or removed, which holds for good in a snapshot
+ * ************************************************************************/
+
+    public int getPlaceCount()
+    {
+        return version.getPlaceCount();
+    }
+
+
+    public boolean isRemoved(int index)
+    {
+        return version.isRemoved(index);
+    }
+
+
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+
+    public FleetScan getFleetScan()
+    {
+        return fleetScan;
+    }
+
+
+/***************************************************************************
+ * Submodule: setFleetScan
+ * Import: inFleetScan (FleetScan)
+ * Export: none
+ * Assertion: whole fleet scans run with inFleetScan from now on, which sets the pool
+ *            and the fleet size past which they are split across it
+ * ************************************************************************/
+
+    public void setFleetScan(FleetScan inFleetScan)
+    {
+        if (inFleetScan == null)
+        {
+            throw new IllegalArgumentException("Invalid fleet scan");
+        }
+        fleetScan = inFleetScan;
+    }
+
+
+/***************************************************************************
+ * Submodule: snapshot
+ * Import: none
+ * Export: frozen (ShipStorage)
+ * Assertion: a read-only storage holding the ships stored right now, taken in constant
+ *            time without copying any ships or waiting for the writers, so reports and
+ *            saves can run on it while other threads keep changing this storage
+ * ************************************************************************/
+
+    public ShipStorage snapshot()
+    {
+        ShipStorage frozen = this;
+
+        if (!readOnly)
+        {
+            frozen = new ShipStorage(this, version.snapshot());
+        }
+        return frozen;
     }
 
 
@@ -160,17 +912,41 @@ public class ShipStorage
  * Submodule: equals
  * Import: inObj (Object)
  * Export: same (boolean)
- * Assertion: compares shipCount and shipArray to see if they're equal
+ * Assertion: compares the ship count and every stored ship to see if they're equal
  * ************************************************************************/
 
     public boolean equals(Object inObj)
     {
         boolean same = false;
-    
+
         if (inObj instanceof ShipStorage)
         {
-            ShipStorage inShipStorage = (ShipStorage)inObj;
-            same = ((shipCount == inShipStorage.getShipCount()) && (shipArray.equals(inShipStorage.getShipArray())));
+            // each side is walked on one version, skipping its removed ships
+            FleetVersion mine = version;
+            FleetVersion theirs = ((ShipStorage)inObj).version;
+            int myCount = mine.getPlaceCount();
+            int theirCount = theirs.getPlaceCount();
+            int myPlace = 0;
+            int theirPlace = 0;
+            same = (myCount - mine.getRemovedCount() == theirCount - theirs.getRemovedCount());
+
+            while ((same) && (myPlace < myCount))
+            {
+                if (mine.isRemoved(myPlace))
+                {
+                    myPlace = myPlace + 1;
+                }
+                else if (theirs.isRemoved(theirPlace))
+                {
+                    theirPlace = theirPlace + 1;
+                }
+                else
+                {
+                    same = mine.getStore().getShip(myPlace).equals(theirs.getStore().getShip(theirPlace));
+                    myPlace = myPlace + 1;
+                    theirPlace = theirPlace + 1;
+                }
+            }
         }
             return same;
     }
@@ -15,11 +15,13 @@ public class Submarine extends Ship
     public static final double MINDEPTH = 0.0; 
     public static final double MAXDEPTH = -500.0;
     public static final double TOL = 0.0001;
+    private static final String[] HULLS = {STL, ALY, TIT}; // position is the hull code
 
 
     // private class fields
     private String hull;
     private double maxDepth;
+    private double depthFactor; // 1 / (10 + |maxDepth|), kept for calcTravel
 
 
 /***********************************************************************
@@ -35,6 +37,7 @@ public class Submarine extends Ship
         super();
         hull = TIT;
         maxDepth = MAXDEPTH;
+        depthFactor = calcDepthFactor(maxDepth);
     }
 
 
@@ -54,6 +57,7 @@ public class Submarine extends Ship
         {
             hull = inHull.toLowerCase();
             maxDepth = inMaxDepth;
+            depthFactor = calcDepthFactor(maxDepth);
         } 
         else
         {
@@ -74,6 +78,7 @@ public class Submarine extends Ship
         super(inSubmarine);
         hull = inSubmarine.getHull();
         maxDepth = inSubmarine.getMaxDepth();
+        depthFactor = calcDepthFactor(maxDepth);
     }
 
 
@@ -125,6 +130,8 @@ public class Submarine extends Ship
         if (validateMaxDepth(inMaxDepth))
         { 
             maxDepth = inMaxDepth;
+            depthFactor = calcDepthFactor(maxDepth);
+            resetSpeed();
         }
         else
         {
@@ -166,6 +173,20 @@ public class Submarine extends Ship
     }
 
 
+/***********************************************************************
+ *  Submodule: hashCode
+ *  Import: none
+ *  Export: hash (integer)
+ *  Assertion: submarines that are equal have the same hash, maxDepth is
+ *             left out because equals only compares it within TOL
+ *  *********************************************************************/
+
+    public int hashCode()
+    {
+        return (31 * super.hashCode()) + hull.hashCode();
+    }
+
+
 /***********************************************************************
  *  Submodule: toString
  *  Import: none
@@ -183,18 +204,47 @@ public class Submarine extends Ship
 
 
 /***********************************************************************
- *  Submodule: toFileString
+ *  Submodule: appendFileString
+ *  Import: str (StringBuilder)
+ *  Export: none
+ *  Assertion: appends the submarine in file format without making any Strings
+ *  *********************************************************************/
+
+    public void appendFileString(StringBuilder str)
+    {
+        str.append("S,");
+        super.appendFileString(str);
+        str.append(',').append(hull).append(',').append(maxDepth);
+    }
+
+
+/***********************************************************************
+ *  Submodule: calcSpeed
  *  Import: none
- *  Export: str (String)
+ *  Export: subSpeed (real)
+ *  Assertion: calculates the distance a submarine covers per hour
  *  *********************************************************************/
 
-    public String toFileString()
+    public double calcSpeed()
     {
-        String str;
+        return calcSpeed(getCylinders(), getMaxDepth());
+    }
 
-        str = ("S," + super.toFileString() + "," + hull + "," + maxDepth);
-       
-        return str;
+
+/***********************************************************************
+ *  Submodule: calcSpeed (static)
+ *  Import: cylinders (integer), maxDepth (real)
+ *  Export: subSpeed (real)
+ *  Assertion: speed of a submarine with that many cylinders and that max depth,
+ *             so stores that keep only the numbers get the same speed
+ *  *********************************************************************/
+
+    public static double calcSpeed(int cylinders, double maxDepth)
+    {
+        double subSpeed;
+
+        subSpeed = (double)(cylinders) * (10.0 + (maxDepth * -1.0));
+        return subSpeed;
     }
 
 
@@ -202,22 +252,77 @@ public class Submarine extends Ship
  *  Submodule: calcTravel
  *  Import: travelDistance (integer)
  *  Export: subTime (real)
- *  Assertion: calculates the time it takes for a submarine to travel a 
- *             certain distance
+ *  Assertion: calculates the time it takes for a submarine to travel a
+ *             certain distance, as (distance / cylinders) * (1 / (10 + |depth|))
+ *             with the second part kept, so the last place rounds as it always has
  *  *********************************************************************/
 
     public double calcTravel(int travelDistance)
     {
-        double subTime;
+        return Ship.calcTravel(travelDistance, getCylinders(), depthFactor);
+    }
 
-        subTime = ((double)(travelDistance) / (double)(super.getEngine().getCylinders())) * (1.0/(10.0 + (getMaxDepth() * -1.0)));
 
-        subTime = Math.round(subTime * 100.0) / 100.0; // rounds to 2 decimal places
-        return subTime;
+/***********************************************************************
+ *  Submodule: calcTravel (static)
+ *  Import: travelDistance (integer), cylinders (integer), maxDepth (real)
+ *  Export: subTime (real)
+ *  Assertion: travel time of a submarine with that many cylinders and that max
+ *             depth, so stores that keep only the numbers get the same time
+ *  *********************************************************************/
+
+    public static double calcTravel(int travelDistance, int cylinders, double maxDepth)
+    {
+        return Ship.calcTravel(travelDistance, cylinders, calcDepthFactor(maxDepth));
+    }
+
+
+/***********************************************************************
+ *  Submodule: hullCode
+ *  Import: inHull (String)
+ *  Export: code (integer)
+ *  Assertion: small number standing for a valid hull, -1 when the hull is not valid
+ *  *********************************************************************/
+
+    public static int hullCode(String inHull)
+    {
+        int code = -1;
+
+        for (int ii = 0; ii < HULLS.length; ii++)
+        {
+            if (HULLS[ii].equals(inHull))
+            {
+                code = ii;
+            }
+        }
+        return code;
+    }
+
+
+/***********************************************************************
+ *  Submodule: hullName
+ *  Import: code (integer)
+ *  Export: hull (String)
+ *  Assertion: the hull a hullCode stands for, fails for an unknown code
+ *  *********************************************************************/
+
+    public static String hullName(int code)
+    {
+        if ((code < 0) || (code >= HULLS.length))
+        {
+            throw new IllegalArgumentException("Invalid hull code " + code);
+        }
+        return HULLS[code];
     }
 
 
 // PRIVATE SUBMODULES
+    private static double calcDepthFactor(double maxDepth)
+    {
+        return 1.0 / (10.0 + (maxDepth * -1.0));
+    }
+
+
 /***********************************************************************
  *  Submodule: validateHull
  *  Import: inHull (String)
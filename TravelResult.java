@@ -0,0 +1,145 @@
+/***************************************************************************
+ * Name: Benjamin Le
+ * Purpose: Holds ship indexes and travel times answered by a ShipStorage query
+ * Date last modified: 27 May 2019
+ * ************************************************************************/
+
+import java.util.*;
+
+public class TravelResult
+{
+    // class constants
+    public static final int NOSHIP = -1;
+
+
+    // private class fields
+    private int[] shipIndex;
+    private double[] travelTime;
+    private int count;
+
+
+/***************************************************************************
+ * Default Constructor
+ * Import: none
+ * Export: none
+ * Assertion: creates an empty result
+ * ************************************************************************/
+
+    public TravelResult()
+    {
+        this(0);
+    }
+
+
+/***************************************************************************
+ * Alternate Constructor
+ * Import: capacity (integer)
+ * Export: address of new TravelResult
+ * Assertion: creates an empty result with room for capacity answers, fails if negative
+ * ************************************************************************/
+
+    public TravelResult(int capacity)
+    {
+        if (capacity < 0)
+        {
+            throw new IllegalArgumentException("Invalid capacity");
+        }
+        shipIndex = new int[capacity];
+        travelTime = new double[capacity];
+        count = 0;
+    }
+
+
+// MUTATORS
+/***************************************************************************
+ * Submodule: reset
+ * Import: newCount (integer)
+ * Export: none
+ * Assertion: makes room for newCount answers so the result can be reused
+ * ************************************************************************/
+
+    public void reset(int newCount)
+    {
+        if (newCount < 0)
+        {
+            throw new IllegalArgumentException("Invalid count");
+        }
+        else if (newCount > shipIndex.length)
+        {
+            shipIndex = new int[newCount];
+            travelTime = new double[newCount];
+        }
+        count = newCount;
+    }
+
+
+/***************************************************************************
+ * Submodule: setResult
+ * Import: position (integer), inShipIndex (integer), inTravelTime (real)
+ * Export: none
+ * Assertion: stores one answer, NOSHIP means there was no ship to answer with
+ * ************************************************************************/
+
+    public void setResult(int position, int inShipIndex, double inTravelTime)
+    {
+        checkPosition(position);
+        shipIndex[position] = inShipIndex;
+        travelTime[position] = inTravelTime;
+    }
+
+
+// ACCESSORS
+    public int getCount()
+    {
+        return count;
+    }
+
+
+    public int getShipIndex(int position)
+    {
+        checkPosition(position);
+        return shipIndex[position];
+    }
+
+
+    public double getTravelTime(int position)
+    {
+        checkPosition(position);
+        return travelTime[position];
+    }
+
+
+/***************************************************************************
+ * Submodule: toString
+ * Import: none
+ * Export: str (String)
+ * ************************************************************************/
+
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+
+        for (int ii = 0; ii < count; ii++)
+        {
+            str.append(shipIndex[ii]).append(',').append(travelTime[ii]).append('\n');
+        }
+        return str.toString();
+    }
+
+
+// PRIVATE SUBMODULES
+/***************************************************************************
+ * Submodule: checkPosition
+ * Import: position (integer)
+ * Export: none
+ * Assertion: fails unless position is inside the result
+ * ************************************************************************/
+
+    private void checkPosition(int position)
+    {
+        if ((position < 0) || (position >= count))
+        {
+            throw new IllegalArgumentException("Invalid result position " + position);
+        }
+    }
+}
@@ -1,9 +1,10 @@
 /***********************************************************************
  *  Author: Benjamin Le
- *  Purpose: User input/output and display main menu of program
+ *  Purpose: User input/output and display main menu of program, every prompt
+ *           reads from one buffered reader and writes to one buffered writer
  *  Date last modified: 27 May 2019
  * *********************************************************************/
-import java.util.*;
+import java.io.*;
 
 public class UserInterface
 {
@@ -22,9 +23,13 @@ public class UserInterface
     public static final int MAXYEAR = 2022;
     public static final int MINCYL = 2;
     public static final int MAXCYL = 20;
+    public static final int PAGESIZE = 1000; // ships asked for at a time when viewing the fleet
+    public static final int BUFFERSIZE = 1 << 16;
 
     // private class fields
     private ShipStorage shipStorage;
+    private BufferedReader in;    // shared by every prompt, so no typed-ahead answer is lost
+    private PrintWriter out;      // flushed when in has nothing ready, the buffer fills or the menu ends
 
 
 /************************************************************************
@@ -36,7 +41,41 @@ public class UserInterface
 
     public UserInterface()
     {
-        shipStorage = new ShipStorage();       
+        this(new ShipStorage());
+    }
+
+
+/************************************************************************
+ * Alternate Constructor
+ * Import: inShipStorage (ShipStorage)
+ * Export: address of new UserInterface
+ * Assertion: works on a storage that may already hold ships, such as one kept
+ *            in a MappedFleetStore from an earlier run
+ * **********************************************************************/
+
+    public UserInterface(ShipStorage inShipStorage)
+    {
+        this(inShipStorage, System.in, System.out);
+    }
+
+
+/************************************************************************
+ * Alternate Constructor
+ * Import: inShipStorage (ShipStorage), input (InputStream), output (OutputStream)
+ * Export: address of new UserInterface
+ * Assertion: reads the answers from input and writes to output, so a recorded
+ *            session can be replayed at full speed
+ * **********************************************************************/
+
+    public UserInterface(ShipStorage inShipStorage, InputStream input, OutputStream output)
+    {
+        if ((inShipStorage == null) || (input == null) || (output == null))
+        {
+            throw new IllegalArgumentException("Invalid import value");
+        }
+        shipStorage = inShipStorage;
+        in = new BufferedReader(new InputStreamReader(input), BUFFERSIZE);
+        out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(output), BUFFERSIZE));
     }
 
 
@@ -49,57 +88,82 @@ public class UserInterface
 
     public void shipMenu()
     {
-        Scanner sc = new Scanner(System.in);
         int shipmenu;
         String fileName;
+        LoadReport report;
 
-        do
+        try
         {
-            shipmenu = integerInput("\nSelect an option\n" +
-                                    "1) Add Ships\n" +
-                                    "2) Destination Check\n" +
-                                    "3) Find Duplicates\n" +
-                                    "4) View Ships\n" +
-                                    "5) Load Ships\n" +
-                                    "6) Save Ships\n" +
-                                    "7) Exit", 1, 7);
-
-            switch (shipmenu)
+            do
             {
-                case 1:
-                    addShip();
-                    break;
-
-                case 2:
-                    destinationCheck();
-                    break;
-
-                case 3: 
-                    findDuplicates();   
-                    break;
-
-                case 4:
-                    System.out.println(shipStorage.viewShips());
-                    break;
-
-                case 5:
-                    fileName = stringInput("Enter a file name");
-                    FileManager.readFile(shipStorage, fileName);
-                    break;
-
-                case 6:
-                    fileName = stringInput("Enter a file name");
-                    FileManager.writeOneRow(shipStorage, fileName);
-                    break;
-
-                case 7:
-                    System.out.println("Thank you for using Ben's program. Good bye!");
-                    break;
-
-                default:
-                    System.out.println("Error. Enter a number between 1 and 7"); 
-            }
-        } while (shipmenu != 7);
+                shipmenu = integerInput("\nSelect an option\n" +
+                                        "1) Add Ships\n" +
+                                        "2) Destination Check\n" +
+                                        "3) Find Duplicates\n" +
+                                        "4) View Ships\n" +
+                                        "5) Load Ships\n" +
+                                        "6) Save Ships\n" +
+                                        "7) Exit", 1, 7);
+
+                switch (shipmenu)
+                {
+                    case 1:
+                        addShip();
+                        break;
+
+                    case 2:
+                        destinationCheck();
+                        break;
+
+                    case 3: 
+                        findDuplicates();   
+                        break;
+
+                    case 4:
+                        viewShips();
+                        break;
+
+                    case 5:
+                        fileName = stringInput("Enter a file name");
+                        report = new LoadReport();
+
+                        try
+                        {
+                            FileManager.loadFile(shipStorage, fileName, report);
+                        }
+                        catch (IOException e)
+                        {
+                            out.println("Error in file processing " + e.getMessage());
+                        }
+                        out.println(report);
+                        break;
+
+                    case 6:
+                        fileName = stringInput("Enter a file name");
+
+                        try
+                        {
+                            FileManager.writeFile(shipStorage, fileName);
+                        }
+                        catch (IOException e)
+                        {
+                            out.println("Error in writing to file " + e.getMessage());
+                        }
+                        break;
+
+                    case 7:
+                        out.println("Thank you for using Ben's program. Good bye!");
+                        break;
+
+                    default:
+                        out.println("Error. Enter a number between 1 and 7"); 
+                }
+            } while (shipmenu != 7);
+        }
+        finally
+        {
+            out.flush();
+        }
     }
     
 
@@ -129,7 +193,12 @@ public class UserInterface
             serialNum = stringInput("\nEnter the serial number in the format XXX.YYY\n" +
                                     "XXX must be between 100 and 300 (inclusive)\n" +
                                     "YYY must be between 1 and 999 (inclusive)");
-            valid = validateSerialNum(serialNum);
+            valid = (Ship.packSerial(serialNum) >= 0); // the same check the ship makes
+
+            if (!valid)
+            {
+                out.println("Invalid. Serial number must be in format XXX.YYY");
+            }
         } while (!valid);            
             
         year = integerInput("\nEnter the commission year between 1950 and 2022 (inclusive)", 1950, 2022);
@@ -142,7 +211,7 @@ public class UserInterface
             valid = validateFuel(fuel);
         } while (!valid);
  
-        Engine engine = new Engine(cylinders, fuel);
+        Engine engine = Engine.of(cylinders, fuel);
        
         if (num == 1) // submarine creation
         {
@@ -187,7 +256,7 @@ public class UserInterface
         int travelDistance;
 
         travelDistance = integerInput("Enter the travel distance", 0, Integer.MAX_VALUE);
-        System.out.println(shipStorage.destinationCheck(travelDistance));
+        out.println(shipStorage.destinationCheck(travelDistance));
     }
 
 
@@ -195,28 +264,29 @@ public class UserInterface
  * Submodule: integerInput
  * Import: prompt (String), min (integer), max (integer)
  * Export: num (integer)
- * Assertion: used for any integer inputs from user and outputs
+ * Assertion: used for any integer inputs from user and outputs, one answer
+ *            a line
  * **********************************************************************/
 
     public int integerInput(String prompt, int min, int max)
     {
         int num = 0;
-        Scanner sc = new Scanner(System.in);
+        boolean valid = false;
 
         do
         {
             try
             {     
-                System.out.println(prompt);
-                num = sc.nextInt();
+                out.println(prompt);
+                num = Integer.parseInt(nextLine().trim());
+                valid = ((num >= min) && (num <= max));
                 prompt = "Error. Enter a valid number between " + min + " and " + max;
             }
-            catch (InputMismatchException e)
+            catch (NumberFormatException e)
             {
-                sc.nextLine();
                 prompt = "Error. Must be an integer";
             }
-        } while ((num < min) || (num > max));
+        } while (!valid);
         return num;
     }
 
@@ -225,28 +295,28 @@ public class UserInterface
  * Submodule: realInput
  * Import: prompt (String), min (real), max (real)
  * Export: num (real)
- * Assertion: used for any real inputs from user
+ * Assertion: used for any real inputs from user, one answer a line
  * **********************************************************************/
 
     public double realInput(String prompt, double min, double max)
     {
         double num = 0;
-        Scanner sc = new Scanner(System.in);
+        boolean valid = false;
 
         do
         {
             try
             {     
-                System.out.println(prompt);
-                num = sc.nextDouble();
+                out.println(prompt);
+                num = Double.parseDouble(nextLine().trim());
+                valid = ((num >= min) && (num <= max));
                 prompt = "Error. Enter a valid number between " + min + " and " + max;
             }
-            catch (InputMismatchException e)
+            catch (NumberFormatException e)
             {
-                sc.nextLine();
                 prompt = "Error. Must be a real number";
             }
-        } while ((num < min) || (num > max));
+        } while (!valid);
         return num;
     }
 
@@ -260,10 +330,8 @@ public class UserInterface
 
     public String stringInput(String prompt)
     {
-        Scanner sc = new Scanner(System.in);
-
-        System.out.println(prompt);
-        String str = sc.nextLine();
+        out.println(prompt);
+        String str = nextLine();
         return str;
     }
 
@@ -272,53 +340,93 @@ public class UserInterface
  * Submodule: findDuplicates
  * Import: none
  * Export: none
- * Assertion: calls findDuplicates from ShipStorage class and prints out ships
+ * Assertion: calls findDuplicates from ShipStorage class and streams the ships
+ *            straight to the console
  * **********************************************************************/
     
     public void findDuplicates()
     {
-        String dupShip;
-        dupShip = shipStorage.findDuplicates();
+        int groupCount;
 
-        if (dupShip != null)
+        try
         {
-            System.out.println(dupShip);
+            groupCount = shipStorage.findDuplicates(out);
+
+            if (groupCount == 0)
+            {
+                out.println("No duplicates found");
+            }
         }
-        else
+        catch (IOException e)
         {
-            System.out.println("No duplicates found");
+            out.println("Error in writing duplicates " + e.getMessage());
+        }
+    }
+
+/************************************************************************
+ * Submodule: viewShips
+ * Import: none
+ * Export: none
+ * Assertion: streams a snapshot of the fleet to the console a page of PAGESIZE places
+ *            at a time, so the whole fleet is never held as one string, the writer
+ *            passes each full buffer on as it goes
+ * **********************************************************************/
+
+    public void viewShips()
+    {
+        int offset = 0;
+        int covered = PAGESIZE;
+        ShipStorage fleet = shipStorage.snapshot(); // pages of one fleet, however it changes meanwhile
+
+        try
+        {
+            while (covered == PAGESIZE)
+            {
+                covered = fleet.viewShips(out, offset, PAGESIZE);
+                offset = offset + covered;
+            }
+            out.println();
+        }
+        catch (IOException e)
+        {
+            out.println("Error in writing ships " + e.getMessage());
         }
     }
 
 // PRIVATE SUBMODULES
 /************************************************************************
- * Submodule: validateSerialNum
- * Import: inSerialNum (real)
- * Export: valid (boolean)
- * Assertion: serial number must be in format XXX.YYY 
- *            where XXX is betwen 100 and 300, YYY is between 1 and 999
+ * Submodule: nextLine
+ * Import: none
+ * Export: line (String)
+ * Assertion: the next line of input, everything written so far is flushed
+ *            first unless more input is already waiting, fails at the end
+ *            of input
  * **********************************************************************/
 
-     private boolean validateSerialNum(String inSerialNum)
-     {
-        int XXX = 0, YYY = 0;
-        String[] serialNum = new String[2]; // creates array of strings size 2
+    private String nextLine()
+    {
+        String line;
 
         try
         {
-            serialNum = inSerialNum.split("\\."); // split the serial number where there is a "."
-            XXX = Integer.parseInt(serialNum[0]); // XXX is first index of array
-            YYY = Integer.parseInt(serialNum[1]); // YYY is second index of array
+            if (!in.ready())
+            {
+                out.flush();
+            }
+            line = in.readLine();
         }
-        catch (NumberFormatException e)
+        catch (IOException e)
         {
-            System.out.println("Invalid serial number " + inSerialNum);
+            out.flush();
+            throw new IllegalArgumentException("Error in reading input " + e.getMessage());
         }
-        catch (ArrayIndexOutOfBoundsException e)
+
+        if (line == null)
         {
-            System.out.println("Invalid. Serial number must be in format XXX.YYY");
+            out.flush();
+            throw new IllegalArgumentException("End of input.");
         }
-        return ((XXX >= 100) && (XXX <= 300) && (YYY >= 1) && (YYY <= 999) && (serialNum[0].length() == 3) && (serialNum[1].length() == 3));
+        return line;
     }
 
 